@@ -4,6 +4,7 @@ import org.activiti.spring.boot.SecurityAutoConfiguration;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // activiti6.0和spring boot 2.* 整合说明
 // exclude = SecurityAutoConfiguration.class 配置是为了activiti6.0和spring boot 2.*整合，否则会报错
@@ -11,6 +12,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication(exclude = SecurityAutoConfiguration.class)
 @MapperScan("com.neimeng.workflow.dao")
+@EnableScheduling
 public class WorkflowApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,87 @@
+package com.neimeng.workflow.command;
+
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.FlowNode;
+import org.activiti.engine.delegate.ExecutionListener;
+import org.activiti.engine.delegate.TaskListener;
+import org.activiti.engine.delegate.event.ActivitiEventDispatcher;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.impl.cmd.NeedsActiveTaskCmd;
+import org.activiti.engine.impl.identity.Authentication;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.impl.util.CollectionUtil;
+import org.activiti.engine.task.IdentityLinkType;
+
+/**
+ *  *  任务跳转命令：结束当前任务，并从目标节点的来源连线流转到目标节点
+ *  *  两步在同一个命令上下文（同一个事务）中执行，不修改流程定义模型，同一流程定义的多个跳转可以并行
+ *  *  complete为true时按完成任务的语义结束当前任务（触发complete任务监听、TASK_COMPLETED事件，历史任务和历史节点正常结束），
+ *  *  为false时直接删除当前任务（删除原因为jumpReason）
+ *  
+ */
+public class JumpTaskCmd extends NeedsActiveTaskCmd<String> {
+
+    private final FlowNode targetFlowNode;
+
+    private final boolean complete;
+
+    public JumpTaskCmd(String taskId, FlowNode targetFlowNode, boolean complete) {
+        super(taskId);
+        this.targetFlowNode = targetFlowNode;
+        this.complete = complete;
+    }
+
+    /**
+     * @return 当前任务的执行对象id
+     */
+    @Override
+    public String execute(CommandContext commandContext, TaskEntity currentTask) {
+        String executionId = complete ? completeTask(commandContext, currentTask)
+                : new DeleteTaskCmd(taskId).execute(commandContext, currentTask);
+        new SetFLowNodeAndGoCmd(targetFlowNode, executionId).execute(commandContext);
+        return executionId;
+    }
+
+    /**
+     * 与CompleteTaskCmd一致地结束任务，再与离开节点时一致地结束当前节点，只是不沿节点的原出口连线继续流转
+     */
+    protected String completeTask(CommandContext commandContext, TaskEntity currentTask) {
+        ActivitiEventDispatcher eventDispatcher = commandContext.getProcessEngineConfiguration().getEventDispatcher();
+        commandContext.getProcessEngineConfiguration().getListenerNotificationHelper()
+                .executeTaskListeners(currentTask, TaskListener.EVENTNAME_COMPLETE);
+        if (Authentication.getAuthenticatedUserId() != null && currentTask.getProcessInstanceId() != null) {
+            ExecutionEntity processInstance = commandContext.getExecutionEntityManager().findById(currentTask.getProcessInstanceId());
+            commandContext.getIdentityLinkEntityManager().involveUser(processInstance, Authentication.getAuthenticatedUserId(),
+                    IdentityLinkType.PARTICIPANT);
+        }
+        if (eventDispatcher.isEnabled()) {
+            eventDispatcher.dispatchEvent(ActivitiEventBuilder.createEntityEvent(ActivitiEventType.TASK_COMPLETED, currentTask));
+        }
+        commandContext.getTaskEntityManager().deleteTask(currentTask, null, false, false);
+
+        ExecutionEntity execution = currentTask.getExecution();
+        FlowElement currentElement = execution.getCurrentFlowElement();
+        if (currentElement instanceof FlowNode) {
+            FlowNode currentFlowNode = (FlowNode) currentElement;
+            if (CollectionUtil.isNotEmpty(currentFlowNode.getExecutionListeners())) {
+                commandContext.getProcessEngineConfiguration().getListenerNotificationHelper()
+                        .executeExecutionListeners(currentFlowNode, execution, ExecutionListener.EVENTNAME_END);
+            }
+            commandContext.getHistoryManager().recordActivityEnd(execution, null);
+            if (eventDispatcher.isEnabled()) {
+                eventDispatcher.dispatchEvent(ActivitiEventBuilder.createActivityEvent(ActivitiEventType.ACTIVITY_COMPLETED,
+                        currentFlowNode.getId(), currentFlowNode.getName(), execution.getId(),
+                        execution.getProcessInstanceId(), execution.getProcessDefinitionId(), currentFlowNode));
+            }
+        }
+        return execution.getId();
+    }
+
+    @Override
+    public String getSuspendedTaskException() {
+        return "挂起的任务不能跳转";
+    }
+}
@@ -0,0 +1,97 @@
+package com.neimeng.workflow.command;
+
+import org.activiti.engine.impl.cmd.StartProcessInstanceCmd;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.cache.EntityCache;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.IdentityLinkType;
+import org.activiti.engine.task.Task;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Comparator;
+import java.util.Map;
+
+import static com.neimeng.workflow.utils.WorkflowConstants.DEFAULT_ASSIGNEE;
+import static com.neimeng.workflow.utils.WorkflowConstants.DEFAULT_DS_PROCESS_KEY;
+
+/**
+ * 启动流程实例并设置第一个任务的审批人
+ * <p>
+ * 启动、取第一个任务、设置审批人在一个命令中完成，只在命令结束时写一次库；
+ * 第一个任务从命令上下文的实体缓存中取，不再查询数据库。
+ * 默认审批流程的审批人为默认审批人，其它流程为数据集创建人，创建人为空时不设置；
+ * 与TaskService.setAssignee一样把审批人作为参与人关联到流程实例，按参与人查询流程实例的结果不变
+ */
+public class StartProcessAndAssignCmd implements Command<StartProcessAndAssignCmd.Result> {
+
+    private final String processDefinitionId;
+
+    private final Map<String, Object> variables;
+
+    private final String dataSetCreator;
+
+    public StartProcessAndAssignCmd(String processDefinitionId, Map<String, Object> variables, String dataSetCreator) {
+        this.processDefinitionId = processDefinitionId;
+        this.variables = variables;
+        this.dataSetCreator = dataSetCreator;
+    }
+
+    @Override
+    public Result execute(CommandContext commandContext) {
+        ProcessInstance processInstance = new StartProcessInstanceCmd<ProcessInstance>(null, processDefinitionId, null, variables)
+                .execute(commandContext);
+
+        // 本命令中创建的任务还没有写库，只在实体缓存中
+        TaskEntity task = commandContext.getSession(EntityCache.class).findInCache(TaskEntity.class).stream()
+                .filter(taskEntity -> processInstance.getId().equals(taskEntity.getProcessInstanceId()) && !taskEntity.isDeleted())
+                .min(Comparator.comparing(TaskEntity::getCreateTime).thenComparing(TaskEntity::getId))
+                .orElse(null);
+        if (task != null) {
+            String assignee = getAssignee(processInstance);
+            if (assignee != null) {
+                commandContext.getTaskEntityManager().changeTaskAssignee(task, assignee);
+                // 与TaskService.setAssignee一致：审批人作为参与人关联到流程实例，并记录设置审批人的注释
+                ExecutionEntity processInstanceEntity = commandContext.getExecutionEntityManager().findById(processInstance.getId());
+                commandContext.getIdentityLinkEntityManager().involveUser(processInstanceEntity, assignee, IdentityLinkType.PARTICIPANT);
+                commandContext.getHistoryManager().createIdentityLinkComment(task.getId(), assignee, null, IdentityLinkType.ASSIGNEE, true);
+            }
+        }
+        return new Result(processInstance, task);
+    }
+
+    private String getAssignee(ProcessInstance processInstance) {
+        if (StringUtils.equals(processInstance.getProcessDefinitionKey(), DEFAULT_DS_PROCESS_KEY)) {
+            return DEFAULT_ASSIGNEE;
+        }
+        return StringUtils.isNotBlank(dataSetCreator) ? dataSetCreator : null;
+    }
+
+    /**
+     * 启动结果
+     */
+    public static class Result {
+
+        private final ProcessInstance processInstance;
+
+        private final Task task;
+
+        public Result(ProcessInstance processInstance, Task task) {
+            this.processInstance = processInstance;
+            this.task = task;
+        }
+
+        public ProcessInstance getProcessInstance() {
+            return processInstance;
+        }
+
+        /**
+         * 第一个任务，流程启动后没有停在任务节点时为空
+         */
+        public Task getTask() {
+            return task;
+        }
+    }
+}
@@ -1,11 +1,23 @@
 
 package com.neimeng.workflow.config;
 
+import com.neimeng.workflow.dao.MailOutboxMapper;
 import com.neimeng.workflow.diagram.ICustomProcessDiagramGenerator;
+import com.neimeng.workflow.job.AsyncJobThreadPool;
+import com.neimeng.workflow.listener.ApplyRequestEventListener;
+import com.neimeng.workflow.listener.AsyncJobEventListener;
+import com.neimeng.workflow.listener.DefinitionCacheEventListener;
+import com.neimeng.workflow.listener.DiagramCacheEventListener;
+import com.neimeng.workflow.listener.TaskCounterEventListener;
+import com.neimeng.workflow.listener.TaskNotificationEventListener;
+import com.neimeng.workflow.mail.MailOutboxDispatcher;
+import com.neimeng.workflow.mail.OutboxActivityBehaviorFactory;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
 import org.activiti.spring.SpringAsyncExecutor;
 import org.activiti.spring.SpringProcessEngineConfiguration;
 import org.activiti.spring.boot.AbstractProcessEngineAutoConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -13,6 +25,8 @@ import org.springframework.transaction.PlatformTransactionManager;
 import javax.annotation.Resource;
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Activiti配置
@@ -31,6 +45,82 @@ public class ActivitiConfig extends AbstractProcessEngineAutoConfiguration {
     @Autowired
     private ICustomProcessDiagramGenerator customProcessDiagramGenerator;
 
+    // 流程图缓存失效监听
+    @Autowired
+    private DiagramCacheEventListener diagramCacheEventListener;
+
+    // 流程定义缓存清除监听
+    @Autowired
+    private DefinitionCacheEventListener definitionCacheEventListener;
+
+    // 待办数量缓存更新监听
+    @Autowired
+    private TaskCounterEventListener taskCounterEventListener;
+
+    // 任务事件推送监听
+    @Autowired
+    private TaskNotificationEventListener taskNotificationEventListener;
+
+    // 异步作业线程池
+    @Autowired
+    private AsyncJobThreadPool asyncJobThreadPool;
+
+    // 异步作业执行结果统计监听
+    @Autowired
+    private AsyncJobEventListener asyncJobEventListener;
+
+    @Autowired
+    private ApplyRequestEventListener applyRequestEventListener;
+
+    @Value("${process.async-executor.activate:true}")
+    private boolean asyncExecutorActivate;
+
+    @Value("${process.async-executor.max-async-jobs-per-acquisition:10}")
+    private int maxAsyncJobsPerAcquisition;
+
+    @Value("${process.async-executor.max-timer-jobs-per-acquisition:10}")
+    private int maxTimerJobsPerAcquisition;
+
+    @Value("${process.async-executor.async-job-lock-time-millis:300000}")
+    private int asyncJobLockTimeMillis;
+
+    @Value("${process.async-executor.timer-lock-time-millis:300000}")
+    private int timerLockTimeMillis;
+
+    @Value("${process.async-executor.async-job-acquire-wait-millis:10000}")
+    private int asyncJobAcquireWaitMillis;
+
+    @Value("${process.async-executor.timer-acquire-wait-millis:10000}")
+    private int timerAcquireWaitMillis;
+
+    // 邮件发件箱
+    @Autowired
+    private MailOutboxMapper mailOutboxMapper;
+
+    @Autowired
+    private MailOutboxDispatcher mailOutboxDispatcher;
+
+    @Value("${process.mail.outbox.enabled:true}")
+    private boolean mailOutboxEnabled;
+
+    @Value("${process.mail.host:}")
+    private String mailHost;
+
+    @Value("${process.mail.port:25}")
+    private int mailPort;
+
+    @Value("${process.mail.use-ssl:false}")
+    private boolean mailUseSsl;
+
+    @Value("${process.mail.username:}")
+    private String mailUsername;
+
+    @Value("${process.mail.password:}")
+    private String mailPassword;
+
+    @Value("${process.mail.default-from:}")
+    private String mailDefaultFrom;
+
     @Bean
     public SpringProcessEngineConfiguration springProcessEngineConfiguration(
             SpringAsyncExecutor springAsyncExecutor) throws IOException {
@@ -40,19 +130,43 @@ public class ActivitiConfig extends AbstractProcessEngineAutoConfiguration {
                 .baseSpringProcessEngineConfiguration(dataSource, transactionManager,
                         springAsyncExecutor);
 
-        //close job executor
-        springProcessEngineConfiguration.setAsyncExecutorActivate(false);
+        //异步作业执行器，执行定时器和异步节点
+        springAsyncExecutor.setTaskExecutor(asyncJobThreadPool.getTaskExecutor());
+        springAsyncExecutor.setRejectedJobsHandler(asyncJobThreadPool);
+        springAsyncExecutor.setMaxAsyncJobsDuePerAcquisition(maxAsyncJobsPerAcquisition);
+        springAsyncExecutor.setMaxTimerJobsPerAcquisition(maxTimerJobsPerAcquisition);
+        springAsyncExecutor.setAsyncJobLockTimeInMillis(asyncJobLockTimeMillis);
+        springAsyncExecutor.setTimerLockTimeInMillis(timerLockTimeMillis);
+        springAsyncExecutor.setDefaultAsyncJobAcquireWaitTimeInMillis(asyncJobAcquireWaitMillis);
+        springAsyncExecutor.setDefaultTimerJobAcquireWaitTimeInMillis(timerAcquireWaitMillis);
+        springProcessEngineConfiguration.setAsyncExecutorActivate(asyncExecutorActivate);
 
         //自定义流程图样式
         springProcessEngineConfiguration.setProcessDiagramGenerator(customProcessDiagramGenerator);
 
-        // 邮件任务，发送方设置
-        springProcessEngineConfiguration.setMailServerHost("smtp.qq.com");
-        springProcessEngineConfiguration.setMailServerPort(587);
-        springProcessEngineConfiguration.setMailServerDefaultFrom("924869722@qq.com");
-        springProcessEngineConfiguration.setMailServerUsername("924869722@qq.com");
-        springProcessEngineConfiguration.setMailServerPassword("wqelhmpwtixfbceg");
-        springProcessEngineConfiguration.setMailServerUseSSL(true);
+        //全局事件监听
+        List<ActivitiEventListener> eventListeners = new ArrayList<>();
+        eventListeners.add(diagramCacheEventListener);
+        eventListeners.add(definitionCacheEventListener);
+        eventListeners.add(taskCounterEventListener);
+        eventListeners.add(taskNotificationEventListener);
+        eventListeners.add(asyncJobEventListener);
+        eventListeners.add(applyRequestEventListener);
+        springProcessEngineConfiguration.setEventListeners(eventListeners);
+
+        // 邮件任务写入发件箱，由后台线程发送，审批事务不等待SMTP
+        if (mailOutboxEnabled) {
+            springProcessEngineConfiguration.setActivityBehaviorFactory(
+                    new OutboxActivityBehaviorFactory(mailOutboxMapper, mailOutboxDispatcher::wakeUp));
+        }
+
+        // 邮件任务，发送方设置，不使用发件箱时由引擎直接发送
+        springProcessEngineConfiguration.setMailServerHost(mailHost);
+        springProcessEngineConfiguration.setMailServerPort(mailPort);
+        springProcessEngineConfiguration.setMailServerDefaultFrom(mailDefaultFrom);
+        springProcessEngineConfiguration.setMailServerUsername(mailUsername);
+        springProcessEngineConfiguration.setMailServerPassword(mailPassword);
+        springProcessEngineConfiguration.setMailServerUseSSL(mailUseSsl);
 
         return springProcessEngineConfiguration;
     }
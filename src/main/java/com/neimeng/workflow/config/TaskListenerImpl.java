@@ -1,22 +1,36 @@
 package com.neimeng.workflow.config;
 
+import com.neimeng.workflow.entity.enums.TaskEventTypeEnum;
+import com.neimeng.workflow.notification.TaskNotification;
+import com.neimeng.workflow.notification.TaskNotificationHub;
+import com.neimeng.workflow.utils.TransactionUtils;
 import org.activiti.engine.delegate.DelegateTask;
 import org.activiti.engine.delegate.TaskListener;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import static com.neimeng.workflow.utils.WorkflowConstants.DEFAULT_ASSIGNEE;
+
 /**
  * 监听器，每次流到下一个节点时，会触发，可以设置该节点的办理人
  */
 @Component
 public class TaskListenerImpl implements TaskListener {
 
+    @Autowired
+    private TaskNotificationHub taskNotificationHub;
+
     /**指定个人任务和组任务的办理人*/
     @Override
     public void notify(DelegateTask delegateTask) {
-        String assignee = "userA";
+        String assignee = DEFAULT_ASSIGNEE;
         System.out.println("---------------------------执行了--------------------------");
         //指定个人任务
         delegateTask.setAssignee(assignee);
+        //事务提交后推送给办理人，与引擎事件重复时按任务合并
+        TaskNotification notification = new TaskNotification(TaskEventTypeEnum.ASSIGNED, delegateTask.getId(),
+                delegateTask.getName(), delegateTask.getProcessInstanceId(), assignee);
+        TransactionUtils.afterCommit(() -> taskNotificationHub.publish(notification, assignee, null));
     }
 
 }
@@ -0,0 +1,48 @@
+package com.neimeng.workflow.controller;
+
+import com.neimeng.workflow.diagram.DiagramRenderExecutor;
+import com.neimeng.workflow.entity.Response;
+import com.neimeng.workflow.job.AsyncJobThreadPool;
+import com.neimeng.workflow.notification.TaskNotificationHub;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Api(tags = "监控接口")
+@Slf4j
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Autowired
+    private DiagramRenderExecutor diagramRenderExecutor;
+
+    @Autowired
+    private TaskNotificationHub taskNotificationHub;
+
+    @Autowired
+    private AsyncJobThreadPool asyncJobThreadPool;
+
+    @ApiOperation("流程图绘制线程池监控")
+    @GetMapping("diagramRender")
+    public Response diagramRender() {
+        return Response.success(diagramRenderExecutor.getMetrics());
+    }
+
+    @ApiOperation("任务事件推送监控")
+    @GetMapping("taskNotification")
+    public Response taskNotification() {
+        return Response.success(taskNotificationHub.getMetrics());
+    }
+
+    @ApiOperation("流程引擎异步作业线程池监控")
+    @GetMapping("asyncJobs")
+    public Response asyncJobs() {
+        return Response.success(asyncJobThreadPool.getMetrics());
+    }
+
+}
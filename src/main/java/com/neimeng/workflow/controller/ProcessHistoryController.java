@@ -1,13 +1,20 @@
 package com.neimeng.workflow.controller;
 
+import com.neimeng.workflow.entity.params.DiagramExportParams;
 import com.neimeng.workflow.service.process.ProcessHistoryService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 @Slf4j
@@ -22,12 +29,29 @@ public class ProcessHistoryController {
      * Purpose：通过id获取流程图并显示processInstanceId（act_hi_procinst）
      *
      * @param processInstanceId 流程定义id
+     * @param imageType         输出格式png或svg，不传时根据请求头Accept判断
+     * @param accept
+     * @param request
      * @param response
      * @return
      */
-    @RequestMapping(value = "/getProcessImg/{processInstanceId}", method = RequestMethod.GET, produces = "application/json;charset=utf-8")
-    public void getProcessImg(@PathVariable String processInstanceId, HttpServletResponse response) {
-        processHistoryService.getProccessImage(processInstanceId, response);
+    @RequestMapping(value = "/getProcessImg/{processInstanceId}", method = RequestMethod.GET)
+    public void getProcessImg(@PathVariable String processInstanceId,
+                              @RequestParam(required = false) String imageType,
+                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                              HttpServletRequest request, HttpServletResponse response) {
+        processHistoryService.getProccessImage(processInstanceId, processHistoryService.resolveImageType(imageType, accept), request, response);
+    }
+
+    /**
+     * 批量导出流程图，返回zip
+     *
+     * @param params   流程实例ID列表或筛选条件
+     * @param response
+     */
+    @PostMapping("/exportProcessImg")
+    public void exportProcessImg(@RequestBody DiagramExportParams params, HttpServletResponse response) {
+        processHistoryService.exportProcessImages(params, response);
     }
 
 }
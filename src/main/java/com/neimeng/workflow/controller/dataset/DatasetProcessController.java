@@ -3,22 +3,29 @@ package com.neimeng.workflow.controller.dataset;
 import com.github.pagehelper.PageInfo;
 import com.neimeng.workflow.entity.Response;
 import com.neimeng.workflow.entity.params.ApplyDatasetInfo;
+import com.neimeng.workflow.entity.params.BatchApplyDatasetInfo;
+import com.neimeng.workflow.entity.params.BatchProcessApproval;
 import com.neimeng.workflow.entity.params.ProcessApproval;
 import com.neimeng.workflow.entity.pojo.ProcessTask;
 import com.neimeng.workflow.entity.query.BasePageQuery;
+import com.neimeng.workflow.entity.query.CursorPageQuery;
+import com.neimeng.workflow.entity.query.InboxQuery;
+import com.neimeng.workflow.entity.vo.BatchResultVo;
+import com.neimeng.workflow.entity.vo.CursorPageVo;
+import com.neimeng.workflow.entity.vo.TaskCountVo;
 import com.neimeng.workflow.entity.vo.TaskVo;
 import com.neimeng.workflow.service.DatasetProcessService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
-import org.activiti.engine.task.Task;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
 import java.util.List;
 
 
@@ -38,6 +45,13 @@ public class DatasetProcessController {
         return Response.success(firstTaskVo);
     }
 
+    @ApiOperation(value = "批量申请流程")
+    @PostMapping("batchApplyDataSet")
+    public Response batchApplyDataSet(@RequestBody @Validated BatchApplyDatasetInfo batchApply, HttpServletRequest request) {
+        BatchResultVo result = datasetProcessService.batchApplyDataSet(batchApply, request);
+        return Response.success(result);
+    }
+
     @ApiOperation("获取用户需要处理的Task")
     @GetMapping("getUserTask/{userName}")
     public Response getUserTask(BasePageQuery pageQuery, HttpServletRequest request, @PathVariable String userName) {
@@ -45,30 +59,45 @@ public class DatasetProcessController {
         return Response.success(pageInfo);
     }
 
+    @ApiOperation("游标分页获取用户需要处理的Task")
+    @GetMapping("getUserTaskByCursor/{userName}")
+    public Response getUserTaskByCursor(CursorPageQuery pageQuery, @PathVariable String userName) {
+        CursorPageVo<TaskVo> page = datasetProcessService.getUserTaskByCursor(pageQuery, userName);
+        return Response.success(page);
+    }
+
+    @ApiOperation("获取用户待办，包括指派给用户的任务和用户或所属组的候选任务")
+    @GetMapping("getInbox/{userName}")
+    public Response getInbox(InboxQuery inboxQuery, @PathVariable String userName) {
+        CursorPageVo<TaskVo> page = datasetProcessService.getInbox(inboxQuery, userName);
+        return Response.success(page);
+    }
+
+    @ApiOperation("订阅任务事件(SSE)，代替轮询待办")
+    @GetMapping(value = "subscribeTasks/{userName}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeTasks(@PathVariable String userName, @RequestParam(required = false) List<String> candidateGroups) {
+        return datasetProcessService.subscribeTasks(userName, candidateGroups);
+    }
+
+    @ApiOperation("获取待办数量")
+    @GetMapping("getTaskCount/{userName}")
+    public Response getTaskCount(@PathVariable String userName, @RequestParam(required = false) List<String> candidateGroups) {
+        TaskCountVo taskCountVo = datasetProcessService.getTaskCount(userName, candidateGroups);
+        return Response.success(taskCountVo);
+    }
+
     @ApiOperation("获取候选人任务")
     @GetMapping("getTasksByCandidate/{candidate}")
     public Response getTasksByCandidate(BasePageQuery pageQuery, @PathVariable String candidate) {
-        List<Task> taskList = datasetProcessService.getTasksByCandidate(pageQuery, candidate);
-        return getResponse(taskList);
-    }
-
-    private Response getResponse(List<Task> taskList) {
-        List<TaskVo> taskVos = new ArrayList<>();
-        taskList.forEach(vo -> {
-            TaskVo taskVo = new TaskVo();
-            taskVo.setTaskId(vo.getId());
-            taskVo.setProcInstId(vo.getProcessInstanceId());
-            taskVo.setTaskName(vo.getName());
-            taskVos.add(taskVo);
-        });
-        return Response.success(taskVos);
+        PageInfo<TaskVo> pageInfo = datasetProcessService.getTasksByCandidate(pageQuery, candidate);
+        return Response.success(pageInfo);
     }
 
     @ApiOperation("获取候选组任务")
     @GetMapping("getTasksByCandidateGroup/{candidateGroup}")
     public Response getTasksByCandidateGroup(BasePageQuery pageQuery, @PathVariable String candidateGroup) {
-        List<Task> taskList = datasetProcessService.getTasksByCandidateGroup(pageQuery, candidateGroup);
-        return getResponse(taskList);
+        PageInfo<TaskVo> pageInfo = datasetProcessService.getTasksByCandidateGroup(pageQuery, candidateGroup);
+        return Response.success(pageInfo);
     }
 
     @ApiOperation("领取任务")
@@ -85,6 +114,13 @@ public class DatasetProcessController {
         return Response.success(taskId);
     }
 
+    @ApiOperation("批量审批任务")
+    @PostMapping("batchApprovalTask")
+    public Response batchApprovalTask(@RequestBody @Validated BatchProcessApproval batchApproval) {
+        BatchResultVo result = datasetProcessService.batchApprovalTask(batchApproval);
+        return Response.success(result);
+    }
+
     @ApiOperation("获取审批历史记录")
     @GetMapping("getApprovalHistory")
     public Response getApprovalHistory(String processInstanceId) {
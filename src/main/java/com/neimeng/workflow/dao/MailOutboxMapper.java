@@ -0,0 +1,43 @@
+package com.neimeng.workflow.dao;
+
+import com.neimeng.workflow.entity.pojo.MailOutbox;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface MailOutboxMapper {
+
+    int insert(MailOutbox record);
+
+    /**
+     * 查询到期的待发送邮件
+     *
+     * @param now
+     * @param limit
+     * @return
+     */
+    List<MailOutbox> selectDue(@Param("now") Date now, @Param("limit") int limit);
+
+    /**
+     * 领取一封邮件，下次发送时间改为租约到期时间；下次发送时间已被其它节点修改时返回0
+     *
+     * @param id
+     * @param nextAttemptTime 查询到的下次发送时间
+     * @param leaseTime       租约到期时间，发送中进程退出时到期后重新发送
+     * @return
+     */
+    int claim(@Param("id") Long id, @Param("nextAttemptTime") Date nextAttemptTime, @Param("leaseTime") Date leaseTime);
+
+    /**
+     * 记录一次发送结果，尝试次数加一
+     *
+     * @param id
+     * @param status
+     * @param nextAttemptTime
+     * @param lastError
+     * @return
+     */
+    int updateAttempt(@Param("id") Long id, @Param("status") int status,
+                      @Param("nextAttemptTime") Date nextAttemptTime, @Param("lastError") String lastError);
+}
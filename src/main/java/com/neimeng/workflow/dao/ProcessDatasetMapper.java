@@ -3,6 +3,11 @@ package com.neimeng.workflow.dao;
 import com.github.pagehelper.Page;
 import com.neimeng.workflow.entity.pojo.ProcessDataset;
 import com.neimeng.workflow.entity.vo.TaskVo;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 public interface ProcessDatasetMapper {
     int deleteByPrimaryKey(Integer id);
@@ -11,6 +16,14 @@ public interface ProcessDatasetMapper {
 
     int insertSelective(ProcessDataset record);
 
+    /**
+     * 批量新增数据集-流程关联信息
+     *
+     * @param records
+     * @return
+     */
+    int insertBatch(List<ProcessDataset> records);
+
     ProcessDataset selectByPrimaryKey(Integer id);
 
     int updateByPrimaryKeySelective(ProcessDataset record);
@@ -25,6 +38,22 @@ public interface ProcessDatasetMapper {
      */
     ProcessDataset selectByProcessInstanceId(String processInstanceId);
 
+    /**
+     * 根据幂等键查询进行中的申请
+     *
+     * @param requestKeys
+     * @return
+     */
+    List<ProcessDataset> selectByRequestKeys(@Param("requestKeys") Collection<String> requestKeys);
+
+    /**
+     * 流程结束后释放幂等键
+     *
+     * @param processInstanceIds
+     * @return
+     */
+    int releaseRequestKeys(@Param("processInstanceIds") Collection<String> processInstanceIds);
+
     /**
      * 查询用户需要处理的任务
      *
@@ -33,10 +62,65 @@ public interface ProcessDatasetMapper {
      */
     Page<TaskVo> getTasksByAssignee(String assignee);
 
+    /**
+     * 按任务创建时间倒序游标分页查询用户任务
+     *
+     * @param assignee
+     * @param createTime 上一页最后一条任务的创建时间，第一页为null
+     * @param taskId     上一页最后一条任务的id
+     * @param limit
+     * @return
+     */
+    List<TaskVo> getTasksByAssigneeAfter(@Param("assignee") String assignee, @Param("createTime") Date createTime,
+                                         @Param("taskId") String taskId, @Param("limit") int limit);
+
+    /**
+     * 查询用户任务总数
+     *
+     * @param assignee
+     * @return
+     */
+    long countTasksByAssignee(String assignee);
+
+    /**
+     * 按优先级、任务创建时间倒序游标分页查询用户待办，包括办理人是当前用户的任务和当前用户或所属组的候选任务
+     *
+     * @param userName
+     * @param candidateGroups 用户所属的组
+     * @param defaultPriority 没有优先级时按此优先级排序
+     * @param priority        上一页最后一条的优先级
+     * @param createTime      上一页最后一条任务的创建时间，第一页为null
+     * @param taskId          上一页最后一条任务的id
+     * @param limit
+     * @return
+     */
+    List<TaskVo> getInboxTasks(@Param("userName") String userName, @Param("candidateGroups") List<String> candidateGroups,
+                               @Param("defaultPriority") int defaultPriority, @Param("priority") Integer priority,
+                               @Param("createTime") Date createTime, @Param("taskId") String taskId, @Param("limit") int limit);
+
+    /**
+     * 查询用户待办总数
+     *
+     * @param userName
+     * @param candidateGroups
+     * @return
+     */
+    long countInboxTasks(@Param("userName") String userName, @Param("candidateGroups") List<String> candidateGroups);
+
     /**
      * 分页查询数据集-流程信息
      *
      * @return
      */
     Page<ProcessDataset> selectList();
-}
\ No newline at end of file
+
+    /**
+     * 批量更新流程状态，流程不再进行中时清空幂等键
+     *
+     * @param processInstanceIds
+     * @param processStatus
+     * @return
+     */
+    int updateStatusByProcessInstanceIds(@Param("processInstanceIds") Collection<String> processInstanceIds,
+                                         @Param("processStatus") Integer processStatus);
+}
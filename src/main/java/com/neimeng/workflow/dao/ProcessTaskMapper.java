@@ -26,4 +26,12 @@ public interface ProcessTaskMapper {
      * @return
      */
     List<ProcessTask> selectByProcessInstanceId(String processInstanceId);
-}
\ No newline at end of file
+
+    /**
+     * 批量新增审批记录
+     *
+     * @param records
+     * @return
+     */
+    int insertBatch(List<ProcessTask> records);
+}
@@ -0,0 +1,15 @@
+package com.neimeng.workflow.dao;
+
+import com.neimeng.workflow.entity.pojo.TaskCandidate;
+
+import java.util.List;
+
+public interface TaskCounterMapper {
+
+    /**
+     * 查询所有运行中任务的办理人和候选组
+     *
+     * @return
+     */
+    List<TaskCandidate> selectOpenTaskCandidates();
+}
@@ -1,6 +1,7 @@
 package com.neimeng.workflow.diagram;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Paint;
 import java.awt.RenderingHints;
@@ -14,6 +15,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.Writer;
 import java.text.AttributedCharacterIterator;
 import java.text.AttributedString;
 
@@ -21,24 +23,28 @@ import javax.imageio.ImageIO;
 
 import com.neimeng.workflow.utils.WorkflowConstants;
 import org.activiti.bpmn.model.AssociationDirection;
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.SVGGeneratorContext;
+import org.apache.batik.svggen.SVGGraphics2D;
 import org.activiti.bpmn.model.GraphicInfo;
 import org.activiti.image.exception.ActivitiImageException;
 import org.activiti.image.impl.DefaultProcessDiagramCanvas;
 import org.activiti.image.util.ReflectUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 public class CustomProcessDiagramCanvas extends DefaultProcessDiagramCanvas {
 
     protected static Color LABEL_COLOR = new Color(0, 0, 0);
 
-    //font
-    protected String activityFontName = "宋体";
-    protected String labelFontName = "宋体";
-    protected String annotationFontName = "宋体";
-    
-    private static volatile boolean flag = false;
+    /**
+     * 字体资源，在父类构造方法调用initialize时赋值，因此不能有初始值
+     */
+    private DiagramResources resources;
 
     public CustomProcessDiagramCanvas(int width, int height, int minX, int minY, String imageType) {
-        super(width, height, minX, minY, imageType);
+        this(width, height, minX, minY, imageType, WorkflowConstants.DIAGRAM_FONT_NAME,
+                WorkflowConstants.DIAGRAM_FONT_NAME, WorkflowConstants.DIAGRAM_FONT_NAME, null);
     }
 
     public CustomProcessDiagramCanvas(int width, int height, int minX, int minY, String imageType,
@@ -47,6 +53,34 @@ public class CustomProcessDiagramCanvas extends DefaultProcessDiagramCanvas {
                 customClassLoader);
     }
 
+    /**
+     * 以已绘制好的底图创建画布，之后只需在其上叠加高亮
+     *
+     * @param baseCanvas 底图，只读取不修改，可在多个线程间共享
+     */
+    public CustomProcessDiagramCanvas(CustomProcessDiagramCanvas baseCanvas) {
+        super(baseCanvas.canvasWidth, baseCanvas.canvasHeight, baseCanvas.minX, baseCanvas.minY, "png",
+                baseCanvas.activityFontName, baseCanvas.labelFontName, baseCanvas.annotationFontName,
+                baseCanvas.customClassLoader);
+        baseCanvas.processDiagram.copyData(processDiagram.getRaster());
+    }
+
+    /**
+     * 底图绘制完成，释放画笔，之后只作为只读的底图使用
+     */
+    public void freeze() {
+        g.dispose();
+    }
+
+    /**
+     * 画布像素占用的字节数
+     *
+     * @return
+     */
+    public int getImageBytes() {
+        return canvasWidth * canvasHeight * 4;
+    }
+
     public void drawHighLight(boolean isStartOrEnd, int x, int y, int width, int height, Color color) {
         Paint originalPaint = g.getPaint();
         Stroke originalStroke = g.getStroke();
@@ -129,7 +163,7 @@ public class CustomProcessDiagramCanvas extends DefaultProcessDiagramCanvas {
             } else {
                 g.setPaint(LABEL_COLOR);
             }
-            g.setFont(new Font(labelFontName, Font.BOLD, 10));
+            g.setFont(resources.getFlowLabelFont());
 
             int wrapWidth = 100;
             int textY = (int) graphicInfo.getY();
@@ -180,72 +214,107 @@ public class CustomProcessDiagramCanvas extends DefaultProcessDiagramCanvas {
         return imageToSerialize;
     }
 
+    /**
+     * 生成svg，与png一样去除左上角空白
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void generateSvg(Writer writer) throws IOException {
+        if (closed) {
+            throw new ActivitiImageException("ProcessDiagramGenerator already closed");
+        }
+        int x = ((minX <= WorkflowConstants.PROCESS_PADDING) ? WorkflowConstants.PROCESS_PADDING : minX) - WorkflowConstants.PROCESS_PADDING;
+        int y = ((minY <= WorkflowConstants.PROCESS_PADDING) ? WorkflowConstants.PROCESS_PADDING : minY) - WorkflowConstants.PROCESS_PADDING;
+        int width = canvasWidth - x;
+        int height = canvasHeight - y;
+
+        SVGGraphics2D svgGraphics = (SVGGraphics2D) g;
+        Element root = svgGraphics.getRoot();
+        root.setAttributeNS(null, "width", String.valueOf(width));
+        root.setAttributeNS(null, "height", String.valueOf(height));
+        root.setAttributeNS(null, "viewBox", x + " " + y + " " + width + " " + height);
+        svgGraphics.stream(root, writer, true, false);
+    }
+
+    /**
+     * 是否为矢量图输出
+     *
+     * @param imageType
+     * @return
+     */
+    public static boolean isSvg(String imageType) {
+        return WorkflowConstants.DIAGRAM_IMAGE_TYPE_SVG.equalsIgnoreCase(imageType);
+    }
+
     @Override
     public void initialize(String imageType) {  
-        this.processDiagram = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);    
-        this.g = processDiagram.createGraphics();
+        if (isSvg(imageType)) {
+            // svg直接输出绘制指令，不分配像素缓冲区
+            Document document = GenericDOMImplementation.getDOMImplementation()
+                    .createDocument("http://www.w3.org/2000/svg", "svg", null);
+            SVGGraphics2D svgGraphics = new SVGGraphics2D(SVGGeneratorContext.createDefault(document), false);
+            svgGraphics.setSVGCanvasSize(new Dimension(canvasWidth, canvasHeight));
+            this.g = svgGraphics;
+        } else {
+            this.processDiagram = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);    
+            this.g = processDiagram.createGraphics();
+        }
 
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g.setPaint(Color.black);
-        
-        Font font = new Font(activityFontName, Font.BOLD, FONT_SIZE);
-        g.setFont(font);   
-        this.fontMetrics = g.getFontMetrics();      
-        
-        LABEL_FONT = new Font(labelFontName, Font.ITALIC, 10);
-        ANNOTATION_FONT = new Font(annotationFontName, Font.PLAIN, FONT_SIZE);
-        //优化加载速度
-        if(flag) {
-            return;
-        }
-        try {
-            USERTASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/userTask.png", customClassLoader));
-            SCRIPTTASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/scriptTask.png", customClassLoader));
-            SERVICETASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/serviceTask.png", customClassLoader));
-            RECEIVETASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/receiveTask.png", customClassLoader));
-            SENDTASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/sendTask.png", customClassLoader));
-            MANUALTASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/manualTask.png", customClassLoader));
-            BUSINESS_RULE_TASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/businessRuleTask.png", customClassLoader));
-            SHELL_TASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/shellTask.png", customClassLoader));
-            CAMEL_TASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/camelTask.png", customClassLoader));
-            MULE_TASK_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/muleTask.png", customClassLoader));
-            
-            TIMER_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/timer.png", customClassLoader));
-            COMPENSATE_THROW_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/compensate-throw.png", customClassLoader));
-            COMPENSATE_CATCH_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/compensate.png", customClassLoader));
-            ERROR_THROW_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/error-throw.png", customClassLoader));
-            ERROR_CATCH_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/error.png", customClassLoader));
-            MESSAGE_THROW_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/message-throw.png", customClassLoader));
-            MESSAGE_CATCH_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/message.png", customClassLoader));
-            SIGNAL_THROW_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/signal-throw.png", customClassLoader));
-            SIGNAL_CATCH_IMAGE = ImageIO.read(ReflectUtil.getResource("org/activiti/icons/signal.png", customClassLoader));
-/*        String baseUrl = Thread.currentThread().getContextClassLoader().getResource("static/img/activiti/").getPath();
-          SCRIPTTASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"scriptTask.png"));
-          USERTASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"userTask.png"));
-          SERVICETASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"serviceTask.png"));
-          RECEIVETASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"receiveTask.png"));
-          SENDTASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"sendTask.png"));
-          MANUALTASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"manualTask.png"));
-          BUSINESS_RULE_TASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"businessRuleTask.png"));
-          SHELL_TASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"shellTask.png"));
-          CAMEL_TASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"camelTask.png"));
-          MULE_TASK_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"muleTask.png"));
-          
-          TIMER_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"timer.png"));
-          COMPENSATE_THROW_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"compensate-throw.png"));
-          COMPENSATE_CATCH_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"compensate.png"));
-          ERROR_THROW_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"error-throw.png"));
-          ERROR_CATCH_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"error.png"));
-          MESSAGE_THROW_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"message-throw.png"));
-          MESSAGE_CATCH_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"message.png"));
-          SIGNAL_THROW_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"signal-throw.png"));
-          SIGNAL_CATCH_IMAGE = ImageIO.read(new FileInputStream(baseUrl+"signal.png"));*/
-          flag = true;
-        } catch (IOException e) {
-          flag = false;
-          LOGGER.warn("Could not load image for process diagram creation: {}", e.getMessage());
-        }  
+
+        // 字体和图标只加载一次，之后所有画布共享
+        this.resources = DiagramResources.of(activityFontName, labelFontName, annotationFontName, FONT_SIZE);
+        g.setFont(resources.getActivityFont());
+        this.fontMetrics = resources.getActivityFontMetrics();
+        SharedImages.load();
     }
 
-    
+    /**
+     * 父类中的图标和标签字体为静态变量，在类初始化时赋值一次，由类加载机制保证其他线程可见
+     */
+    private static final class SharedImages {
+
+        static {
+            DiagramResources defaults = DiagramResources.of(WorkflowConstants.DIAGRAM_FONT_NAME,
+                    WorkflowConstants.DIAGRAM_FONT_NAME, WorkflowConstants.DIAGRAM_FONT_NAME, FONT_SIZE);
+            LABEL_FONT = defaults.getLabelFont();
+            ANNOTATION_FONT = defaults.getAnnotationFont();
+            try {
+                USERTASK_IMAGE = read("userTask.png");
+                SCRIPTTASK_IMAGE = read("scriptTask.png");
+                SERVICETASK_IMAGE = read("serviceTask.png");
+                RECEIVETASK_IMAGE = read("receiveTask.png");
+                SENDTASK_IMAGE = read("sendTask.png");
+                MANUALTASK_IMAGE = read("manualTask.png");
+                BUSINESS_RULE_TASK_IMAGE = read("businessRuleTask.png");
+                SHELL_TASK_IMAGE = read("shellTask.png");
+                CAMEL_TASK_IMAGE = read("camelTask.png");
+                MULE_TASK_IMAGE = read("muleTask.png");
+
+                TIMER_IMAGE = read("timer.png");
+                COMPENSATE_THROW_IMAGE = read("compensate-throw.png");
+                COMPENSATE_CATCH_IMAGE = read("compensate.png");
+                ERROR_THROW_IMAGE = read("error-throw.png");
+                ERROR_CATCH_IMAGE = read("error.png");
+                MESSAGE_THROW_IMAGE = read("message-throw.png");
+                MESSAGE_CATCH_IMAGE = read("message.png");
+                SIGNAL_THROW_IMAGE = read("signal-throw.png");
+                SIGNAL_CATCH_IMAGE = read("signal.png");
+            } catch (IOException e) {
+                LOGGER.warn("Could not load image for process diagram creation: {}", e.getMessage());
+            }
+        }
+
+        private static BufferedImage read(String name) throws IOException {
+            return ImageIO.read(ReflectUtil.getResource("org/activiti/icons/" + name, null));
+        }
+
+        /**
+         * 触发类初始化
+         */
+        static void load() {
+        }
+    }
 }
\ No newline at end of file
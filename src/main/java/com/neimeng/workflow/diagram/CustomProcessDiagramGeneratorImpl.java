@@ -1,24 +1,36 @@
 package com.neimeng.workflow.diagram;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.neimeng.workflow.diagram.ICustomProcessDiagramGenerator;
 import com.neimeng.workflow.diagram.CustomProcessDiagramCanvas;
 import org.activiti.bpmn.model.*;
 import org.activiti.bpmn.model.Process;
+import org.activiti.image.exception.ActivitiImageException;
 import org.activiti.image.impl.DefaultProcessDiagramGenerator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import javax.imageio.ImageIO;
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Activiti生成流程图
@@ -29,6 +41,18 @@ public class CustomProcessDiagramGeneratorImpl extends DefaultProcessDiagramGene
     static {
         new CustomProcessDiagramCanvas(10,10,0,0,"png", "宋体","宋体","宋体",null);
     }
+
+    /**
+     * 流程定义底图缓存，按像素占用的字节数限制大小
+     */
+    private final Cache<String, CustomProcessDiagramCanvas> baseCanvasCache;
+
+    public CustomProcessDiagramGeneratorImpl(@Value("${process.diagram.base-cache.max-bytes:268435456}") long maxBytes) {
+        this.baseCanvasCache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Weigher<String, CustomProcessDiagramCanvas>) (key, canvas) -> canvas.getImageBytes())
+                .build();
+    }
     
     public CustomProcessDiagramCanvas generateProcessDiagram(BpmnModel bpmnModel, String imageType,
             List<String> highLightedActivities, List<String> highLightedFlows, String activityFontName,
@@ -121,80 +145,149 @@ public class CustomProcessDiagramGeneratorImpl extends DefaultProcessDiagramGene
           
           // Draw highlighted activities
           if (highLightedActivities.contains(flowNode.getId())) {
-              if(!CollectionUtils.isEmpty(currIds)
-                      &&currIds.contains(flowNode.getId())
-                      && !(flowNode instanceof Gateway)) {//非结束节点，并且是当前节点
-                  drawHighLight((flowNode instanceof StartEvent), processDiagramCanvas, bpmnModel.getGraphicInfo(flowNode.getId()), colors[1]); 
-              }else {//普通节点
-                  drawHighLight((flowNode instanceof StartEvent)||(flowNode instanceof EndEvent),processDiagramCanvas, bpmnModel.getGraphicInfo(flowNode.getId()), colors[0]);
-              }         
+              drawActivityHighLight(processDiagramCanvas, bpmnModel, flowNode, colors, currIds);
           }
 
         }
         
         // Outgoing transitions of activity
         for (SequenceFlow sequenceFlow : flowNode.getOutgoingFlows()) {
-            String flowId = sequenceFlow.getId();
-          boolean highLighted = (highLightedFlows.contains(flowId));
-          String defaultFlow = null;
-          if (flowNode instanceof Activity) {
-            defaultFlow = ((Activity) flowNode).getDefaultFlow();
-          } else if (flowNode instanceof Gateway) {
-            defaultFlow = ((Gateway) flowNode).getDefaultFlow();
+          drawSequenceFlow(processDiagramCanvas, bpmnModel, flowNode, sequenceFlow, highLightedFlows.contains(sequenceFlow.getId()), scaleFactor, colors);
+        }
+
+     // Nested elements
+        if (flowNode instanceof FlowElementsContainer) {
+          for (FlowElement nestedFlowElement : ((FlowElementsContainer) flowNode).getFlowElements()) {
+            if (nestedFlowElement instanceof FlowNode) {
+              drawActivity(processDiagramCanvas, bpmnModel, (FlowNode) nestedFlowElement, 
+                  highLightedActivities, highLightedFlows, scaleFactor);
+            }
           }
+        }
+    }
+
+    /**
+     * 绘制节点高亮框：当前节点使用colors[1]，已执行节点使用colors[0]
+     */
+    protected void drawActivityHighLight(CustomProcessDiagramCanvas processDiagramCanvas, BpmnModel bpmnModel, FlowNode flowNode,
+            Color[] colors, Set<String> currIds) {
+      if(!CollectionUtils.isEmpty(currIds)
+              &&currIds.contains(flowNode.getId())
+              && !(flowNode instanceof Gateway)) {//非结束节点，并且是当前节点
+          drawHighLight((flowNode instanceof StartEvent), processDiagramCanvas, bpmnModel.getGraphicInfo(flowNode.getId()), colors[1]);
+      }else {//普通节点
+          drawHighLight((flowNode instanceof StartEvent)||(flowNode instanceof EndEvent),processDiagramCanvas, bpmnModel.getGraphicInfo(flowNode.getId()), colors[0]);
+      }
+    }
+
+    /**
+     * 绘制连线及连线名称
+     */
+    protected void drawSequenceFlow(CustomProcessDiagramCanvas processDiagramCanvas, BpmnModel bpmnModel, FlowNode flowNode,
+            SequenceFlow sequenceFlow, boolean highLighted, double scaleFactor, Color[] colors) {
+      String flowId = sequenceFlow.getId();
+      String defaultFlow = null;
+      if (flowNode instanceof Activity) {
+        defaultFlow = ((Activity) flowNode).getDefaultFlow();
+      } else if (flowNode instanceof Gateway) {
+        defaultFlow = ((Gateway) flowNode).getDefaultFlow();
+      }
+      
+      boolean isDefault = false;
+      if (defaultFlow != null && defaultFlow.equalsIgnoreCase(flowId)) {
+        isDefault = true;
+      }
+//        boolean drawConditionalIndicator = sequenceFlow.getConditionExpression() != null && !(flowNode instanceof Gateway);
+      
+      String sourceRef = sequenceFlow.getSourceRef();
+      String targetRef = sequenceFlow.getTargetRef();
+      FlowElement sourceElement = bpmnModel.getFlowElement(sourceRef);
+      FlowElement targetElement = bpmnModel.getFlowElement(targetRef);
+      List<GraphicInfo> graphicInfoList = bpmnModel.getFlowLocationGraphicInfo(flowId);
+      if (graphicInfoList != null && graphicInfoList.size() > 0) {
+        graphicInfoList = connectionPerfectionizer(processDiagramCanvas, bpmnModel, sourceElement, targetElement, graphicInfoList);
+        int xPoints[]= new int[graphicInfoList.size()];
+        int yPoints[]= new int[graphicInfoList.size()];
+        
+        for (int i=1; i<graphicInfoList.size(); i++) {
+          GraphicInfo graphicInfo = graphicInfoList.get(i);
+          GraphicInfo previousGraphicInfo = graphicInfoList.get(i-1);
           
-          boolean isDefault = false;
-          if (defaultFlow != null && defaultFlow.equalsIgnoreCase(flowId)) {
-            isDefault = true;
+          if (i == 1) {
+            xPoints[0] = (int) previousGraphicInfo.getX();
+            yPoints[0] = (int) previousGraphicInfo.getY();
           }
-//        boolean drawConditionalIndicator = sequenceFlow.getConditionExpression() != null && !(flowNode instanceof Gateway);
+          xPoints[i] = (int) graphicInfo.getX();
+          yPoints[i] = (int) graphicInfo.getY();
           
-          String sourceRef = sequenceFlow.getSourceRef();
-          String targetRef = sequenceFlow.getTargetRef();
-          FlowElement sourceElement = bpmnModel.getFlowElement(sourceRef);
-          FlowElement targetElement = bpmnModel.getFlowElement(targetRef);
-          List<GraphicInfo> graphicInfoList = bpmnModel.getFlowLocationGraphicInfo(flowId);
-          if (graphicInfoList != null && graphicInfoList.size() > 0) {
-            graphicInfoList = connectionPerfectionizer(processDiagramCanvas, bpmnModel, sourceElement, targetElement, graphicInfoList);
-            int xPoints[]= new int[graphicInfoList.size()];
-            int yPoints[]= new int[graphicInfoList.size()];
-            
-            for (int i=1; i<graphicInfoList.size(); i++) {
-              GraphicInfo graphicInfo = graphicInfoList.get(i);
-              GraphicInfo previousGraphicInfo = graphicInfoList.get(i-1);
-              
-              if (i == 1) {
-                xPoints[0] = (int) previousGraphicInfo.getX();
-                yPoints[0] = (int) previousGraphicInfo.getY();
-              }
-              xPoints[i] = (int) graphicInfo.getX();
-              yPoints[i] = (int) graphicInfo.getY();
-              
-            }
-            //画高亮线
-            processDiagramCanvas.drawSequenceflow(xPoints, yPoints, false, isDefault, highLighted, scaleFactor, colors[0]);
-            
-            // Draw sequenceflow label
+        }
+        //画高亮线
+        processDiagramCanvas.drawSequenceflow(xPoints, yPoints, false, isDefault, highLighted, scaleFactor, colors[0]);
+        
+        // Draw sequenceflow label
 //          GraphicInfo labelGraphicInfo = bpmnModel.getLabelGraphicInfo(flowId);
 //          if (labelGraphicInfo != null) {
 //            processDiagramCanvas.drawLabel(sequenceFlow.getName(), labelGraphicInfo, false);
 //          }else {//解决流程图连线名称不显示的BUG
-                GraphicInfo lineCenter = getLineCenter(graphicInfoList);
-                processDiagramCanvas.drawLabel(highLighted, sequenceFlow.getName(), lineCenter, Math.abs(xPoints[1]-xPoints[0]) >= 5);
+            GraphicInfo lineCenter = getLineCenter(graphicInfoList);
+            processDiagramCanvas.drawLabel(highLighted, sequenceFlow.getName(), lineCenter, Math.abs(xPoints[1]-xPoints[0]) >= 5);
 //          }
-          }
-        }
+      }
+    }
 
-     // Nested elements
-        if (flowNode instanceof FlowElementsContainer) {
-          for (FlowElement nestedFlowElement : ((FlowElementsContainer) flowNode).getFlowElements()) {
-            if (nestedFlowElement instanceof FlowNode) {
-              drawActivity(processDiagramCanvas, bpmnModel, (FlowNode) nestedFlowElement, 
-                  highLightedActivities, highLightedFlows, scaleFactor);
+    /**
+     * 在底图上叠加高亮：只按高亮的连线和节点 id 查找元素绘制，不再遍历整个模型，
+     * 先画连线再画节点边框，保证节点边框压在连线之上
+     */
+    protected void drawHighLightOverlay(CustomProcessDiagramCanvas processDiagramCanvas, BpmnModel bpmnModel,
+            Set<String> highLightedActivities, Set<String> highLightedFlows, double scaleFactor, Color[] colors, Set<String> currIds) {
+        for (String flowId : new TreeSet<>(highLightedFlows)) {
+            FlowElement flowElement = bpmnModel.getFlowElement(flowId);
+            if (!(flowElement instanceof SequenceFlow)) {
+                continue;
             }
-          }
+            SequenceFlow sequenceFlow = (SequenceFlow) flowElement;
+            FlowElement source = bpmnModel.getFlowElement(sequenceFlow.getSourceRef());
+            if (source instanceof FlowNode) {
+                drawSequenceFlow(processDiagramCanvas, bpmnModel, (FlowNode) source, sequenceFlow, true, scaleFactor, colors);
+            }
+        }
+        for (String activityId : new TreeSet<>(highLightedActivities)) {
+            FlowElement flowElement = bpmnModel.getFlowElement(activityId);
+            if (flowElement instanceof FlowNode && activityDrawInstructions.containsKey(flowElement.getClass())) {
+                drawActivityHighLight(processDiagramCanvas, bpmnModel, (FlowNode) flowElement, colors, currIds);
+            }
+        }
+    }
+
+    /**
+     * 获取流程定义的底图（不含任何高亮），不存在时绘制一次并缓存
+     */
+    protected CustomProcessDiagramCanvas getBaseCanvas(String processDefinitionId, BpmnModel bpmnModel, String imageType,
+            String activityFontName, String labelFontName, String annotationFontName, ClassLoader customClassLoader, double scaleFactor) {
+        String key = processDefinitionId + "|" + scaleFactor + "|" + activityFontName + "|" + labelFontName + "|" + annotationFontName;
+        try {
+            return baseCanvasCache.get(key, () -> {
+                CustomProcessDiagramCanvas baseCanvas = generateProcessDiagram(bpmnModel, imageType, null, null,
+                        activityFontName, labelFontName, annotationFontName, customClassLoader, scaleFactor, new Color[]{Color.BLACK, Color.BLACK}, null);
+                baseCanvas.freeze();
+                return baseCanvas;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new ActivitiImageException("Error occurred while drawing base diagram of " + processDefinitionId, e.getCause());
         }
     }
+
+    /**
+     * 流程定义删除后，清除其底图
+     *
+     * @param processDefinitionId
+     */
+    public void evictBaseCanvas(String processDefinitionId) {
+        String prefix = processDefinitionId + "|";
+        baseCanvasCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
     protected void drawHighLight(boolean isStartOrEnd, CustomProcessDiagramCanvas processDiagramCanvas, GraphicInfo graphicInfo, Color color) {
       processDiagramCanvas.drawHighLight(isStartOrEnd, (int) graphicInfo.getX(), (int) graphicInfo.getY(), (int) graphicInfo.getWidth(), (int) graphicInfo.getHeight(), color);
     }
@@ -343,19 +436,51 @@ public class CustomProcessDiagramGeneratorImpl extends DefaultProcessDiagramGene
             ClassLoader customClassLoader, double scaleFactor, Color[] colors, Set<String> currIds) {
         CustomProcessDiagramCanvas customProcessDiagramCanvas = generateProcessDiagram(bpmnModel, imageType, highLightedActivities, highLightedFlows, 
                 activityFontName, labelFontName, annotationFontName, customClassLoader, scaleFactor,colors, currIds);
-        BufferedImage bufferedImage = customProcessDiagramCanvas.generateBufferedImage(imageType);
-        ByteArrayOutputStream bs = new ByteArrayOutputStream();  
-        ImageOutputStream imOut;
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
         try {
-            imOut = ImageIO.createImageOutputStream(bs);
-            ImageIO.write(bufferedImage, "PNG", imOut);
+            encode(customProcessDiagramCanvas, imageType, bs);
         } catch (IOException e) {
             e.printStackTrace();
-        }  
-          
-        InputStream is = new ByteArrayInputStream(bs.toByteArray());
-        return is;
+        }
+        return new ByteArrayInputStream(bs.toByteArray());
     }
+
+    @Override
+    public void generateDiagram(String processDefinitionId, BpmnModel bpmnModel, String imageType, List<String> highLightedActivities,
+            List<String> highLightedFlows, String activityFontName, String labelFontName, String annotationFontName,
+            ClassLoader customClassLoader, double scaleFactor, Color[] colors, Set<String> currIds, OutputStream outputStream) throws IOException {
+        CustomProcessDiagramCanvas customProcessDiagramCanvas;
+        if (CustomProcessDiagramCanvas.isSvg(imageType)) {
+            // 矢量图没有像素底图可复用，直接输出完整的绘制指令
+            customProcessDiagramCanvas = generateProcessDiagram(bpmnModel, imageType, highLightedActivities, highLightedFlows,
+                    activityFontName, labelFontName, annotationFontName, customClassLoader, scaleFactor, colors, currIds);
+        } else {
+            CustomProcessDiagramCanvas baseCanvas = getBaseCanvas(processDefinitionId, bpmnModel, imageType,
+                    activityFontName, labelFontName, annotationFontName, customClassLoader, scaleFactor);
+            // 复制底图，只叠加当前实例的高亮部分
+            customProcessDiagramCanvas = new CustomProcessDiagramCanvas(baseCanvas);
+            drawHighLightOverlay(customProcessDiagramCanvas, bpmnModel,
+                    highLightedActivities == null ? Collections.<String>emptySet() : new HashSet<>(highLightedActivities),
+                    highLightedFlows == null ? Collections.<String>emptySet() : new HashSet<>(highLightedFlows),
+                    scaleFactor, colors, currIds);
+        }
+        encode(customProcessDiagramCanvas, imageType, outputStream);
+    }
+
+    /**
+     * 将画布直接编码到输出流
+     */
+    protected void encode(CustomProcessDiagramCanvas customProcessDiagramCanvas, String imageType, OutputStream outputStream) throws IOException {
+        if (CustomProcessDiagramCanvas.isSvg(imageType)) {
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            customProcessDiagramCanvas.generateSvg(writer);
+            writer.flush();
+        } else {
+            BufferedImage bufferedImage = customProcessDiagramCanvas.generateBufferedImage(imageType);
+            ImageIO.write(bufferedImage, "PNG", outputStream);
+        }
+    }
+
     @Override
     public InputStream generateDiagram(BpmnModel bpmnModel, String imageType, String activityFontName, String labelFontName, String annotationFontName, ClassLoader customClassLoader) {
         return generateDiagram(bpmnModel, imageType, Collections.<String>emptyList(), Collections.<String>emptyList(), 
@@ -0,0 +1,165 @@
+package com.neimeng.workflow.diagram;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.neimeng.workflow.entity.vo.DiagramRenderMetricsVo;
+import com.neimeng.workflow.exception.GlobalException;
+import com.neimeng.workflow.exception.ServiceBusyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流程图绘制线程池
+ * <p>
+ * 说明：绘制是CPU密集型操作，放在独立的有界线程池中执行，避免大量看图请求占满Tomcat线程影响审批接口；
+ * 队列满时直接拒绝，由全局异常处理返回503
+ */
+@Slf4j
+@Component
+public class DiagramRenderExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final int queueCapacity;
+
+    private final long timeoutSeconds;
+
+    private final long retryAfterSeconds;
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder renderCount = new LongAdder();
+
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private final LongAdder totalRenderNanos = new LongAdder();
+
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+
+    public DiagramRenderExecutor(@Value("${process.diagram.render.parallelism:0}") int parallelism,
+                                 @Value("${process.diagram.render.queue-size:64}") int queueCapacity,
+                                 @Value("${process.diagram.render.timeout-seconds:30}") long timeoutSeconds,
+                                 @Value("${process.diagram.render.retry-after-seconds:1}") long retryAfterSeconds) {
+        // 未配置时按CPU核数
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.timeoutSeconds = timeoutSeconds;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("diagram-render-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 在绘制线程池中执行，当前线程等待结果
+     *
+     * @param task 绘制任务
+     * @return
+     */
+    public <T> T render(Callable<T> task) {
+        return await(submit(task));
+    }
+
+    /**
+     * 提交到绘制线程池，不等待结果
+     *
+     * @param task 绘制任务
+     * @return
+     * @throws ServiceBusyException 线程池和队列都已满
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        long submitTime = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                long startTime = System.nanoTime();
+                totalWaitNanos.add(startTime - submitTime);
+                try {
+                    return task.call();
+                } finally {
+                    long cost = System.nanoTime() - startTime;
+                    renderCount.increment();
+                    totalRenderNanos.add(cost);
+                    maxRenderNanos.accumulateAndGet(cost, Math::max);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            log.warn("diagram render rejected, active=[{}], queue=[{}]", executor.getActiveCount(), executor.getQueue().size());
+            throw new ServiceBusyException("流程图绘制繁忙，请稍后重试", retryAfterSeconds);
+        }
+    }
+
+    /**
+     * 等待绘制结果，超时后取消
+     *
+     * @param future
+     * @return
+     */
+    public <T> T await(Future<T> future) {
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new GlobalException("生成流程图超时");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new GlobalException("生成流程图被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("生成流程图出错", cause);
+        }
+    }
+
+    /**
+     * 最大并行绘制数
+     *
+     * @return
+     */
+    public int getParallelism() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * 线程池监控信息
+     *
+     * @return
+     */
+    public DiagramRenderMetricsVo getMetrics() {
+        DiagramRenderMetricsVo metrics = new DiagramRenderMetricsVo();
+        metrics.setParallelism(executor.getMaximumPoolSize());
+        metrics.setActiveCount(executor.getActiveCount());
+        metrics.setQueueSize(executor.getQueue().size());
+        metrics.setQueueCapacity(queueCapacity);
+        long count = renderCount.sum();
+        metrics.setCompletedCount(count);
+        metrics.setRejectedCount(rejectedCount.sum());
+        if (count > 0) {
+            metrics.setAvgWaitMillis(totalWaitNanos.sum() / 1e6 / count);
+            metrics.setAvgRenderMillis(totalRenderNanos.sum() / 1e6 / count);
+        }
+        metrics.setMaxRenderMillis(maxRenderNanos.get() / 1e6);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
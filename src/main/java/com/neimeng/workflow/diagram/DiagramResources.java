@@ -0,0 +1,80 @@
+package com.neimeng.workflow.diagram;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 流程图绘制用到的字体资源
+ * <p>
+ * 说明：创建后不再修改，同一组字体只创建一次，多个画布、多个线程之间共享，无需加锁
+ */
+final class DiagramResources {
+
+    private static final ConcurrentMap<String, DiagramResources> RESOURCES = new ConcurrentHashMap<>();
+
+    private final Font activityFont;
+
+    private final FontMetrics activityFontMetrics;
+
+    private final Font labelFont;
+
+    private final Font flowLabelFont;
+
+    private final Font annotationFont;
+
+    private DiagramResources(String activityFontName, String labelFontName, String annotationFontName, int fontSize) {
+        this.activityFont = new Font(activityFontName, Font.BOLD, fontSize);
+        this.labelFont = new Font(labelFontName, Font.ITALIC, 10);
+        this.flowLabelFont = new Font(labelFontName, Font.BOLD, 10);
+        this.annotationFont = new Font(annotationFontName, Font.PLAIN, fontSize);
+
+        // 与画布相同的渲染设置下计算字体度量
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            this.activityFontMetrics = g.getFontMetrics(activityFont);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * 获取字体资源
+     *
+     * @param activityFontName   节点字体
+     * @param labelFontName      标签字体
+     * @param annotationFontName 注释字体
+     * @param fontSize           节点和注释的字号
+     * @return
+     */
+    static DiagramResources of(String activityFontName, String labelFontName, String annotationFontName, int fontSize) {
+        String key = activityFontName + "|" + labelFontName + "|" + annotationFontName + "|" + fontSize;
+        return RESOURCES.computeIfAbsent(key, k -> new DiagramResources(activityFontName, labelFontName, annotationFontName, fontSize));
+    }
+
+    Font getActivityFont() {
+        return activityFont;
+    }
+
+    FontMetrics getActivityFontMetrics() {
+        return activityFontMetrics;
+    }
+
+    Font getLabelFont() {
+        return labelFont;
+    }
+
+    Font getFlowLabelFont() {
+        return flowLabelFont;
+    }
+
+    Font getAnnotationFont() {
+        return annotationFont;
+    }
+}
@@ -4,7 +4,9 @@ import org.activiti.bpmn.model.BpmnModel;
 import org.activiti.image.ProcessDiagramGenerator;
 
 import java.awt.*;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Set;
 
@@ -24,4 +26,24 @@ public interface ICustomProcessDiagramGenerator extends ProcessDiagramGenerator
                                 double scaleFactor,
                                 Color[] colors,
                                 Set<String> currIds);
+
+    /**
+     * 生成流程图并直接编码到调用方提供的输出流，同一流程定义的底图只绘制一次，之后只在底图副本上叠加高亮
+     *
+     * @param processDefinitionId 流程定义ID，作为底图缓存的key
+     * @param outputStream        图片输出流，由调用方负责关闭
+     */
+    void generateDiagram(String processDefinitionId,
+                         BpmnModel bpmnModel,
+                         String imageType,
+                         List<String> highLightedActivities,
+                         List<String> highLightedFlows,
+                         String activityFontName,
+                         String labelFontName,
+                         String annotationFontName,
+                         ClassLoader customClassLoader,
+                         double scaleFactor,
+                         Color[] colors,
+                         Set<String> currIds,
+                         OutputStream outputStream) throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.neimeng.workflow.diagram;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流程图缓存，缓存编码后的图片字节
+ * <p>
+ * 说明：key由流程定义ID、图片类型以及高亮节点、高亮连线、当前节点的hash组成，
+ * 同一流程定义下高亮状态相同的流程实例共用同一张图片；按字节数限制缓存大小
+ */
+@Slf4j
+@Component
+public class ProcessDiagramCache {
+
+    private static final char KEY_SEPARATOR = '|';
+
+    /**
+     * 缓存key -> 图片字节
+     */
+    private final Cache<String, byte[]> diagramCache;
+
+    /**
+     * 流程实例ID -> 最近一次使用的缓存key，任务完成时据此失效
+     */
+    private final Cache<String, String> instanceKeys;
+
+    public ProcessDiagramCache(@Value("${process.diagram.cache.max-bytes:67108864}") long maxBytes,
+                               @Value("${process.diagram.cache.max-instances:10000}") long maxInstances,
+                               @Value("${process.diagram.cache.expire-minutes:30}") long expireMinutes) {
+        this.diagramCache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Weigher<String, byte[]>) (key, value) -> value.length)
+                .expireAfterAccess(expireMinutes, TimeUnit.MINUTES)
+                .build();
+        this.instanceKeys = CacheBuilder.newBuilder()
+                .maximumSize(maxInstances)
+                .expireAfterAccess(expireMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 生成缓存key
+     *
+     * @param processDefinitionId   流程定义ID
+     * @param imageType             图片类型
+     * @param highLightedActivities 高亮节点
+     * @param highLightedFlows      高亮连线
+     * @param currIds               当前节点
+     * @return
+     */
+    public static String buildKey(String processDefinitionId, String imageType, Collection<String> highLightedActivities,
+                                  Collection<String> highLightedFlows, Collection<String> currIds) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putSorted(hasher, highLightedActivities);
+        putSorted(hasher, highLightedFlows);
+        putSorted(hasher, currIds);
+        return processDefinitionId + KEY_SEPARATOR + imageType + KEY_SEPARATOR + hasher.hash().toString();
+    }
+
+    /**
+     * 根据缓存key生成ETag，高亮状态不变时ETag不变
+     *
+     * @param key
+     * @return
+     */
+    public static String buildETag(String key) {
+        return Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * 绘制时只关心是否包含，与顺序、重复无关，因此排序去重后再计算hash
+     */
+    private static void putSorted(Hasher hasher, Collection<String> ids) {
+        if (ids != null) {
+            Set<String> sorted = new TreeSet<>();
+            for (String id : ids) {
+                // 流程实例根执行实例的节点id为空
+                if (id != null) {
+                    sorted.add(id);
+                }
+            }
+            for (String id : sorted) {
+                hasher.putString(id, StandardCharsets.UTF_8).putChar(KEY_SEPARATOR);
+            }
+        }
+        // 区分不同的集合
+        hasher.putChar('#');
+    }
+
+    /**
+     * 获取流程图，缓存不存在时调用loader生成；同一key的并发请求只会生成一次
+     *
+     * @param processInstanceId 流程实例ID
+     * @param key               缓存key
+     * @param loader            生成图片
+     * @return
+     */
+    public byte[] get(String processInstanceId, String key, Callable<byte[]> loader) {
+        instanceKeys.put(processInstanceId, key);
+        try {
+            return diagramCache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("生成流程图出错", cause);
+        }
+    }
+
+    /**
+     * 获取已缓存的流程图，不存在时返回null，不等待其它线程生成
+     *
+     * @param processInstanceId 流程实例ID
+     * @param key               缓存key
+     * @return
+     */
+    public byte[] getIfPresent(String processInstanceId, String key) {
+        byte[] image = diagramCache.getIfPresent(key);
+        if (image != null) {
+            instanceKeys.put(processInstanceId, key);
+        }
+        return image;
+    }
+
+    /**
+     * 缓存生成好的流程图
+     *
+     * @param processInstanceId 流程实例ID
+     * @param key               缓存key
+     * @param image
+     */
+    public void put(String processInstanceId, String key, byte[] image) {
+        instanceKeys.put(processInstanceId, key);
+        diagramCache.put(key, image);
+    }
+
+    /**
+     * 流程实例有任务完成时，失效该实例对应的流程图
+     *
+     * @param processInstanceId
+     */
+    public void invalidateInstance(String processInstanceId) {
+        if (processInstanceId == null) {
+            return;
+        }
+        String key = instanceKeys.getIfPresent(processInstanceId);
+        if (key != null) {
+            instanceKeys.invalidate(processInstanceId);
+            diagramCache.invalidate(key);
+            log.debug("invalidate process diagram cache, processInstanceId=[{}], key=[{}]", processInstanceId, key);
+        }
+    }
+
+    /**
+     * 流程定义删除后，失效该流程定义下的所有流程图
+     *
+     * @param processDefinitionId
+     */
+    public void invalidateDefinition(String processDefinitionId) {
+        String prefix = processDefinitionId + KEY_SEPARATOR;
+        diagramCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+}
@@ -16,4 +16,9 @@ public class ResponseCode {
 	 */
 	public static final int GLOBAL_ERROR = 10;
 
+	/**
+	 * service busy
+	 */
+	public static final int SERVICE_BUSY = 11;
+
 }
@@ -0,0 +1,22 @@
+package com.neimeng.workflow.entity.enums;
+
+import lombok.Getter;
+
+/**
+ * 发件箱邮件状态
+ */
+@Getter
+public enum MailStatusEnum {
+
+    PENDING(0, "待发送"),
+    SENT(1, "已发送"),
+    FAILED(2, "发送失败");
+
+    private int code;
+    private String value;
+
+    MailStatusEnum(int code, String value) {
+        this.code = code;
+        this.value = value;
+    }
+}
@@ -0,0 +1,24 @@
+package com.neimeng.workflow.entity.enums;
+
+import lombok.Getter;
+
+/**
+ * 推送给客户端的任务事件类型
+ */
+@Getter
+public enum TaskEventTypeEnum {
+
+    CREATED("任务创建"),
+    ASSIGNED("任务指派"),
+    COMPLETED("任务完成"),
+    /**
+     * 推送缓冲区溢出，有事件被丢弃，客户端需要重新查询待办
+     */
+    RESYNC("重新同步");
+
+    private String value;
+
+    TaskEventTypeEnum(String value) {
+        this.value = value;
+    }
+}
@@ -8,6 +8,7 @@ import lombok.Setter;
 import lombok.ToString;
 
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 
 /**
  * 申请数据集的基本信息
@@ -34,6 +35,10 @@ public class ApplyDatasetInfo {
     @NotNull
     protected String processDefKey;
 
+    @ApiModelProperty(value = "幂等键，重试时保持不变；为空时同一数据集同时只能有一个进行中的申请")
+    @Size(max = 64)
+    protected String requestKey;
+
     // 优先级
     private PriorityEnum priority;
 
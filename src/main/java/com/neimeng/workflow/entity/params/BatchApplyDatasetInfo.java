@@ -0,0 +1,20 @@
+package com.neimeng.workflow.entity.params;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+@ApiModel("批量申请参数")
+public class BatchApplyDatasetInfo {
+
+    @ApiModelProperty(value = "申请列表", required = true)
+    @NotEmpty
+    @Valid
+    private List<ApplyDatasetInfo> applications;
+
+}
@@ -0,0 +1,35 @@
+package com.neimeng.workflow.entity.params;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@ApiModel("批量导出流程图参数")
+public class DiagramExportParams {
+
+    @ApiModelProperty(value = "流程实例ID列表，不传时按下面的条件筛选")
+    private List<String> processInstanceIds;
+
+    @ApiModelProperty(value = "流程定义key")
+    private String processDefinitionKey;
+
+    @ApiModelProperty(value = "流程开始时间起")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date startedAfter;
+
+    @ApiModelProperty(value = "流程开始时间止")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date startedBefore;
+
+    @ApiModelProperty(value = "是否已结束，不传时不限")
+    private Boolean finished;
+
+    @ApiModelProperty(value = "图片格式png或svg，默认png")
+    private String imageType;
+
+}
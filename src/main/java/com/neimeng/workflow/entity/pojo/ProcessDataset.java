@@ -22,6 +22,11 @@ public class ProcessDataset {
 
     private Integer priority;
 
+    /**
+     * 幂等键，流程结束后为空
+     */
+    private String requestKey;
+
     @JSONField(format = "yyyy-MM-dd HH:mm:ss")
     private Date createTime;
 
@@ -84,6 +89,14 @@ public class ProcessDataset {
         this.priority = priority;
     }
 
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public void setRequestKey(String requestKey) {
+        this.requestKey = requestKey;
+    }
+
     public Date getCreateTime() {
         return createTime;
     }
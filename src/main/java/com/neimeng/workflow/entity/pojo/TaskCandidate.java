@@ -0,0 +1,36 @@
+package com.neimeng.workflow.entity.pojo;
+
+/**
+ * 运行中任务的办理人和候选组，每个候选组一行，没有候选组时groupId为空
+ */
+public class TaskCandidate {
+    private String taskId;
+
+    private String assignee;
+
+    private String groupId;
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getAssignee() {
+        return assignee;
+    }
+
+    public void setAssignee(String assignee) {
+        this.assignee = assignee;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+}
@@ -18,4 +18,7 @@ public class BasePageQuery {
     @ApiModelProperty(value = "每页条数", required = false)
     private int pageSize = 10;
 
+    @ApiModelProperty(value = "是否查询总数，默认查询，不查询时total为-1", required = false)
+    private boolean count = true;
+
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.neimeng.workflow.entity.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+@ApiModel
+@Getter
+@Setter
+@ToString
+public class CursorPageQuery {
+
+    @ApiModelProperty(value = "每页条数", required = false)
+    private int pageSize = 10;
+
+    @ApiModelProperty(value = "下一页标识，取上一页返回的nextPageToken，第一页不传", required = false)
+    private String pageToken;
+
+    @ApiModelProperty(value = "是否查询总数，默认不查询", required = false)
+    private boolean count = false;
+
+}
@@ -0,0 +1,20 @@
+package com.neimeng.workflow.entity.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+@ApiModel
+@Getter
+@Setter
+@ToString(callSuper = true)
+public class InboxQuery extends CursorPageQuery {
+
+    @ApiModelProperty(value = "候选组，不传时按用户所属的组查询", required = false)
+    private List<String> candidateGroups;
+
+}
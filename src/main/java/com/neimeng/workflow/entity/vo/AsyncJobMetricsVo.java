@@ -0,0 +1,75 @@
+package com.neimeng.workflow.entity.vo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 流程引擎异步作业线程池监控信息
+ */
+@Getter
+@Setter
+@ToString
+public class AsyncJobMetricsVo {
+
+    /**
+     * 核心线程数
+     */
+    private int corePoolSize;
+
+    /**
+     * 最大线程数
+     */
+    private int maxPoolSize;
+
+    /**
+     * 正在执行的作业数
+     */
+    private int activeCount;
+
+    /**
+     * 排队等待的作业数
+     */
+    private int queueSize;
+
+    /**
+     * 队列容量
+     */
+    private int queueCapacity;
+
+    /**
+     * 成功提交到线程池的作业数
+     */
+    private long acquiredCount;
+
+    /**
+     * 执行成功的作业数
+     */
+    private long executedCount;
+
+    /**
+     * 执行失败的作业数，失败后按重试次数重新执行
+     */
+    private long failedCount;
+
+    /**
+     * 线程池满被拒绝、释放锁后等待重新获取的次数
+     */
+    private long rejectedCount;
+
+    /**
+     * 平均排队时间(毫秒)
+     */
+    private double avgWaitMillis;
+
+    /**
+     * 平均执行时间(毫秒)
+     */
+    private double avgExecuteMillis;
+
+    /**
+     * 最长执行时间(毫秒)
+     */
+    private double maxExecuteMillis;
+
+}
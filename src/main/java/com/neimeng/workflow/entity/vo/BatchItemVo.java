@@ -0,0 +1,46 @@
+package com.neimeng.workflow.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 批量操作中单项的处理结果
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemVo {
+
+    /**
+     * 请求项标识，如任务id
+     */
+    private String id;
+
+    /**
+     * 是否成功
+     */
+    private boolean success;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+    /**
+     * 成功时返回的数据，如下一环节的任务id
+     */
+    private Object data;
+
+    public static BatchItemVo success(String id, Object data) {
+        return new BatchItemVo(id, true, null, data);
+    }
+
+    public static BatchItemVo failure(String id, String message) {
+        return new BatchItemVo(id, false, message, null);
+    }
+}
@@ -0,0 +1,45 @@
+package com.neimeng.workflow.entity.vo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量操作结果，逐项返回成功或失败原因
+ */
+@Getter
+@Setter
+@ToString
+public class BatchResultVo {
+
+    /**
+     * 成功数量
+     */
+    private int successCount;
+
+    /**
+     * 失败数量
+     */
+    private int failureCount;
+
+    /**
+     * 每一项的处理结果
+     */
+    private List<BatchItemVo> items = new ArrayList<>();
+
+    public void add(BatchItemVo item) {
+        items.add(item);
+        if (item.isSuccess()) {
+            successCount++;
+        } else {
+            failureCount++;
+        }
+    }
+
+    public void addAll(List<BatchItemVo> itemList) {
+        itemList.forEach(this::add);
+    }
+}
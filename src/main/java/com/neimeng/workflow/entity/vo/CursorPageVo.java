@@ -0,0 +1,37 @@
+package com.neimeng.workflow.entity.vo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ */
+@Getter
+@Setter
+@ToString
+public class CursorPageVo<T> {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> list;
+
+    /**
+     * 下一页标识，没有下一页时为null
+     */
+    private String nextPageToken;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 总数，不查询总数时为null
+     */
+    private Long total;
+
+}
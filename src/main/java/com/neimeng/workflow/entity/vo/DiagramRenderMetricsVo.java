@@ -0,0 +1,60 @@
+package com.neimeng.workflow.entity.vo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 流程图绘制线程池监控信息
+ */
+@Getter
+@Setter
+@ToString
+public class DiagramRenderMetricsVo {
+
+    /**
+     * 最大并行绘制数
+     */
+    private int parallelism;
+
+    /**
+     * 正在绘制的数量
+     */
+    private int activeCount;
+
+    /**
+     * 排队等待的数量
+     */
+    private int queueSize;
+
+    /**
+     * 队列容量
+     */
+    private int queueCapacity;
+
+    /**
+     * 已完成的绘制次数
+     */
+    private long completedCount;
+
+    /**
+     * 因繁忙被拒绝的次数
+     */
+    private long rejectedCount;
+
+    /**
+     * 平均排队时间(毫秒)
+     */
+    private double avgWaitMillis;
+
+    /**
+     * 平均绘制时间(毫秒)
+     */
+    private double avgRenderMillis;
+
+    /**
+     * 最长绘制时间(毫秒)
+     */
+    private double maxRenderMillis;
+
+}
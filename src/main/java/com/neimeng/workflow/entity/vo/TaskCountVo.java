@@ -0,0 +1,27 @@
+package com.neimeng.workflow.entity.vo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 待办数量
+ */
+@Getter
+@Setter
+@ToString
+public class TaskCountVo {
+
+    /**
+     * 办理人是当前用户的任务数量
+     */
+    private long assigneeCount;
+
+    /**
+     * 每个候选组中还没有办理人的任务数量
+     */
+    private Map<String, Long> groupCounts = new LinkedHashMap<>();
+}
@@ -0,0 +1,45 @@
+package com.neimeng.workflow.entity.vo;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 任务事件推送监控信息
+ */
+@Getter
+@Setter
+@ToString
+public class TaskNotificationMetricsVo {
+
+    /**
+     * 连接数
+     */
+    private int connectionCount;
+
+    /**
+     * 有连接的用户数
+     */
+    private int userCount;
+
+    /**
+     * 等待推送线程处理的连接数
+     */
+    private int pendingDispatchCount;
+
+    /**
+     * 有订阅者的事件数
+     */
+    private long publishedCount;
+
+    /**
+     * 被同一任务更新的事件合并掉的次数
+     */
+    private long coalescedCount;
+
+    /**
+     * 缓冲区溢出改发RESYNC的次数
+     */
+    private long overflowCount;
+
+}
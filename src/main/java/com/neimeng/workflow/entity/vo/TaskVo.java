@@ -1,10 +1,13 @@
 package com.neimeng.workflow.entity.vo;
 
+import com.alibaba.fastjson.annotation.JSONField;
 import com.neimeng.workflow.entity.params.ApplyDatasetInfo;
 import com.neimeng.workflow.entity.pojo.ProcessDataset;
 import lombok.*;
 import org.activiti.engine.task.Task;
 
+import java.util.Date;
+
 /**
  * 前端展示任务信息
  */
@@ -19,9 +22,19 @@ public class TaskVo extends ProcessDataset {
 
     private String taskName;
 
+    @JSONField(format = "yyyy-MM-dd HH:mm:ss")
+    private Date taskCreateTime;
+
+    /**
+     * 任务办理人，候选任务还没有领取时为空
+     */
+    private String assignee;
+
     public TaskVo(Task task) {
         this.taskId = task.getId();
         this.taskName = task.getName();
+        this.taskCreateTime = task.getCreateTime();
+        this.assignee = task.getAssignee();
         setProcInstId(task.getProcessInstanceId());
     }
 }
@@ -4,6 +4,8 @@ import com.neimeng.workflow.entity.Response;
 import com.neimeng.workflow.entity.ResponseCode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
 import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
@@ -11,6 +13,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
 
@@ -53,4 +56,19 @@ public class GlobalExceptionHandler {
         return new Response(ResponseCode.GLOBAL_ERROR, e.getMessage());
     }
 
+    /**
+     * 服务繁忙，返回503并告知客户端重试间隔
+     *
+     * @param e
+     * @param response
+     * @return
+     */
+    @ExceptionHandler(ServiceBusyException.class)
+    public Response handleServiceBusyException(ServiceBusyException e, HttpServletResponse response) {
+        log.warn(e.getMessage());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return new Response(ResponseCode.SERVICE_BUSY, e.getMessage());
+    }
+
 }
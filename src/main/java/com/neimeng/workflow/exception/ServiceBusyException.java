@@ -0,0 +1,19 @@
+package com.neimeng.workflow.exception;
+
+/**
+ * 服务繁忙，由全局异常处理返回503，并通过Retry-After告知客户端稍后重试
+ */
+public class ServiceBusyException extends GlobalException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String msg, long retryAfterSeconds) {
+        super(msg);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.neimeng.workflow.job;
+
+import com.neimeng.workflow.entity.vo.AsyncJobMetricsVo;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.impl.asyncexecutor.AsyncExecutor;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.runtime.Job;
+import org.activiti.spring.SpringRejectedJobsHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流程引擎异步作业线程池
+ * <p>
+ * 说明：定时器、异步节点等作业由引擎的获取线程从数据库取出后提交到这个线程池执行，
+ * 新建的异步作业在创建它的事务提交后由提交事务的线程（如审批请求的线程）直接提交；
+ * 线程池和队列都满时释放作业的锁，作业留在数据库中由获取线程稍后重新获取，不会在提交线程上同步执行。
+ * 执行成功和失败的数量由 AsyncJobEventListener 记录
+ */
+@Slf4j
+@Component
+public class AsyncJobThreadPool implements SpringRejectedJobsHandler {
+
+    private final ThreadPoolTaskExecutor taskExecutor;
+
+    private final int queueCapacity;
+
+    private final LongAdder acquiredCount = new LongAdder();
+
+    private final LongAdder executedCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder runCount = new LongAdder();
+
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private final LongAdder totalExecuteNanos = new LongAdder();
+
+    private final AtomicLong maxExecuteNanos = new AtomicLong();
+
+    public AsyncJobThreadPool(@Value("${process.async-executor.core-pool-size:4}") int corePoolSize,
+                              @Value("${process.async-executor.max-pool-size:8}") int maxPoolSize,
+                              @Value("${process.async-executor.queue-size:100}") int queueCapacity,
+                              @Value("${process.async-executor.keep-alive-seconds:60}") int keepAliveSeconds) {
+        this.queueCapacity = queueCapacity;
+        this.taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(corePoolSize);
+        taskExecutor.setMaxPoolSize(maxPoolSize);
+        taskExecutor.setQueueCapacity(queueCapacity);
+        taskExecutor.setKeepAliveSeconds(keepAliveSeconds);
+        taskExecutor.setThreadNamePrefix("activiti-async-job-");
+        taskExecutor.setDaemon(true);
+        taskExecutor.setTaskDecorator(this::decorate);
+        taskExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        taskExecutor.setAwaitTerminationSeconds(30);
+        taskExecutor.initialize();
+    }
+
+    public ThreadPoolTaskExecutor getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    /**
+     * 线程池满时释放作业的锁，由获取线程稍后重新获取，与引擎默认的异步执行器一致
+     */
+    @Override
+    public void jobRejected(AsyncExecutor asyncExecutor, Job job) {
+        // 提交前已经过装饰，被拒绝的作业不算提交成功
+        acquiredCount.decrement();
+        rejectedCount.increment();
+        log.debug("async job rejected, unacquire and retry later, jobId=[{}]", job.getId());
+        CommandContext commandContext = Context.getCommandContext();
+        if (commandContext != null) {
+            commandContext.getJobManager().unacquire(job);
+        } else {
+            asyncExecutor.getProcessEngineConfiguration().getCommandExecutor().execute(context -> {
+                context.getJobManager().unacquire(job);
+                return null;
+            });
+        }
+    }
+
+    public void recordExecuted() {
+        executedCount.increment();
+    }
+
+    public void recordFailed() {
+        failedCount.increment();
+    }
+
+    /**
+     * 线程池监控信息
+     *
+     * @return
+     */
+    public AsyncJobMetricsVo getMetrics() {
+        AsyncJobMetricsVo metrics = new AsyncJobMetricsVo();
+        metrics.setCorePoolSize(taskExecutor.getCorePoolSize());
+        metrics.setMaxPoolSize(taskExecutor.getMaxPoolSize());
+        metrics.setActiveCount(taskExecutor.getActiveCount());
+        metrics.setQueueSize(taskExecutor.getThreadPoolExecutor().getQueue().size());
+        metrics.setQueueCapacity(queueCapacity);
+        metrics.setAcquiredCount(acquiredCount.sum());
+        metrics.setExecutedCount(executedCount.sum());
+        metrics.setFailedCount(failedCount.sum());
+        metrics.setRejectedCount(rejectedCount.sum());
+        long count = runCount.sum();
+        if (count > 0) {
+            metrics.setAvgWaitMillis(totalWaitNanos.sum() / 1e6 / count);
+            metrics.setAvgExecuteMillis(totalExecuteNanos.sum() / 1e6 / count);
+        }
+        metrics.setMaxExecuteMillis(maxExecuteNanos.get() / 1e6);
+        return metrics;
+    }
+
+    /**
+     * 引擎关闭后执行，停止获取后等待正在执行的作业完成
+     */
+    @PreDestroy
+    public void shutdown() {
+        taskExecutor.shutdown();
+    }
+
+    private Runnable decorate(Runnable job) {
+        acquiredCount.increment();
+        long submitTime = System.nanoTime();
+        return () -> {
+            long startTime = System.nanoTime();
+            totalWaitNanos.add(startTime - submitTime);
+            try {
+                job.run();
+            } finally {
+                long cost = System.nanoTime() - startTime;
+                runCount.increment();
+                totalExecuteNanos.add(cost);
+                maxExecuteNanos.accumulateAndGet(cost, Math::max);
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.neimeng.workflow.listener;
+
+import com.neimeng.workflow.dao.ProcessDatasetMapper;
+import com.neimeng.workflow.service.ApplyRequestCache;
+import com.neimeng.workflow.utils.TransactionUtils;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 流程引擎事件监听，流程实例结束或删除时释放申请的幂等键
+ * <p>
+ * 不经过审批接口结束的流程（定时器、异步节点、直接删除流程实例等）也会释放，同一数据集可以再次申请；
+ * 幂等键在流程事务中清空，本地缓存在事务提交后清除
+ */
+@Component
+public class ApplyRequestEventListener implements ActivitiEventListener {
+
+    @Autowired
+    private ProcessDatasetMapper processDatasetMapper;
+
+    @Autowired
+    private ApplyRequestCache applyRequestCache;
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (event.getType() != ActivitiEventType.PROCESS_COMPLETED && event.getType() != ActivitiEventType.PROCESS_CANCELLED) {
+            return;
+        }
+        if (event.getProcessInstanceId() == null) {
+            return;
+        }
+        List<String> processInstanceIds = Collections.singletonList(event.getProcessInstanceId());
+        processDatasetMapper.releaseRequestKeys(processInstanceIds);
+        TransactionUtils.afterCommit(() -> applyRequestCache.evict(processInstanceIds));
+    }
+
+    /**
+     * 释放失败不影响流程结束，申请时会忽略已经结束的流程
+     */
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package com.neimeng.workflow.listener;
+
+import com.neimeng.workflow.job.AsyncJobThreadPool;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流程引擎事件监听，记录异步作业执行成功和失败的数量
+ */
+@Component
+public class AsyncJobEventListener implements ActivitiEventListener {
+
+    @Autowired
+    private AsyncJobThreadPool asyncJobThreadPool;
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (event.getType() == ActivitiEventType.JOB_EXECUTION_SUCCESS) {
+            asyncJobThreadPool.recordExecuted();
+        } else if (event.getType() == ActivitiEventType.JOB_EXECUTION_FAILURE) {
+            asyncJobThreadPool.recordFailed();
+        }
+    }
+
+    /**
+     * 统计失败不影响作业执行
+     */
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+}
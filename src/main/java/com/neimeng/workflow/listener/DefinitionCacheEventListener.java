@@ -0,0 +1,62 @@
+package com.neimeng.workflow.listener;
+
+import com.neimeng.workflow.diagram.CustomProcessDiagramGeneratorImpl;
+import com.neimeng.workflow.diagram.ProcessDiagramCache;
+import com.neimeng.workflow.service.process.ProcessDefinitionIndexCache;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 流程引擎事件监听，部署或流程定义删除时清除流程定义索引、底图和流程图缓存
+ */
+@Component
+public class DefinitionCacheEventListener implements ActivitiEventListener {
+
+    @Autowired
+    private ProcessDefinitionIndexCache processDefinitionIndexCache;
+
+    @Autowired
+    private CustomProcessDiagramGeneratorImpl processDiagramGenerator;
+
+    @Autowired
+    private ProcessDiagramCache processDiagramCache;
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (event.getType() != ActivitiEventType.ENTITY_DELETED) {
+            return;
+        }
+        Object entity = ((ActivitiEntityEvent) event).getEntity();
+        List<String> processDefinitionIds;
+        if (entity instanceof Deployment) {
+            processDefinitionIds = processDefinitionIndexCache.evictDeployment(((Deployment) entity).getId());
+        } else if (entity instanceof ProcessDefinition) {
+            String processDefinitionId = ((ProcessDefinition) entity).getId();
+            processDefinitionIndexCache.evict(processDefinitionId);
+            processDefinitionIds = Collections.singletonList(processDefinitionId);
+        } else {
+            return;
+        }
+        for (String processDefinitionId : processDefinitionIds) {
+            processDiagramGenerator.evictBaseCanvas(processDefinitionId);
+            processDiagramCache.invalidateDefinition(processDefinitionId);
+        }
+    }
+
+    /**
+     * 缓存清除失败不影响删除部署
+     */
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+}
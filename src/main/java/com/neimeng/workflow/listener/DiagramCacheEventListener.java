@@ -0,0 +1,33 @@
+package com.neimeng.workflow.listener;
+
+import com.neimeng.workflow.diagram.ProcessDiagramCache;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流程引擎事件监听，任务完成时失效对应流程实例的流程图缓存
+ */
+@Component
+public class DiagramCacheEventListener implements ActivitiEventListener {
+
+    @Autowired
+    private ProcessDiagramCache processDiagramCache;
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (event.getType() == ActivitiEventType.TASK_COMPLETED) {
+            processDiagramCache.invalidateInstance(event.getProcessInstanceId());
+        }
+    }
+
+    /**
+     * 缓存失效失败不影响流程流转
+     */
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+}
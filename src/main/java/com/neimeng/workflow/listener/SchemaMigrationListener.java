@@ -0,0 +1,42 @@
+package com.neimeng.workflow.listener;
+
+import com.neimeng.workflow.service.SchemaMigrationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 启动时升级业务表结构，在部署默认流程之前、Web服务开始接收请求之前执行
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SchemaMigrationListener implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrationListener.class);
+
+    @Autowired
+    private SchemaMigrationService schemaMigrationService;
+
+    /**
+     * 配置文件中控制启动项目时是否升级表结构
+     */
+    @Value("${process.migration.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent contextRefreshedEvent) {
+        if (!enabled) {
+            return;
+        }
+        List<Integer> versions = schemaMigrationService.migrate();
+        LOGGER.info("schema migration finished, applied versions={}", versions);
+    }
+}
@@ -0,0 +1,85 @@
+package com.neimeng.workflow.listener;
+
+import com.neimeng.workflow.service.process.TaskCounterCache;
+import com.neimeng.workflow.utils.TransactionUtils;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.task.IdentityLinkType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 流程引擎事件监听，任务创建、认领、完成、删除及候选组变化时更新待办数量缓存
+ * <p>
+ * 事件发生时取出需要的数据，在事务提交后再更新缓存，回滚的修改不会计入
+ */
+@Component
+public class TaskCounterEventListener implements ActivitiEventListener {
+
+    @Autowired
+    private TaskCounterCache taskCounterCache;
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (!(event instanceof ActivitiEntityEvent)) {
+            return;
+        }
+        Object entity = ((ActivitiEntityEvent) event).getEntity();
+        if (entity instanceof TaskEntity) {
+            onTaskEvent(event.getType(), (TaskEntity) entity);
+        } else if (entity instanceof IdentityLinkEntity) {
+            onIdentityLinkEvent(event.getType(), (IdentityLinkEntity) entity);
+        }
+    }
+
+    private void onTaskEvent(ActivitiEventType type, TaskEntity task) {
+        String taskId = task.getId();
+        if (type == ActivitiEventType.TASK_CREATED) {
+            String assignee = task.getAssignee();
+            Set<String> groupIds = new HashSet<>();
+            for (IdentityLinkEntity identityLink : task.getIdentityLinks()) {
+                if (isCandidateGroup(identityLink)) {
+                    groupIds.add(identityLink.getGroupId());
+                }
+            }
+            TransactionUtils.afterCommit(() -> taskCounterCache.taskCreated(taskId, assignee, groupIds));
+        } else if (type == ActivitiEventType.TASK_ASSIGNED) {
+            String assignee = task.getAssignee();
+            TransactionUtils.afterCommit(() -> taskCounterCache.taskAssigned(taskId, assignee));
+        } else if (type == ActivitiEventType.TASK_COMPLETED || type == ActivitiEventType.ENTITY_DELETED) {
+            TransactionUtils.afterCommit(() -> taskCounterCache.taskRemoved(taskId));
+        }
+    }
+
+    private void onIdentityLinkEvent(ActivitiEventType type, IdentityLinkEntity identityLink) {
+        if (identityLink.getTaskId() == null || !isCandidateGroup(identityLink)) {
+            return;
+        }
+        String taskId = identityLink.getTaskId();
+        String groupId = identityLink.getGroupId();
+        if (type == ActivitiEventType.ENTITY_CREATED) {
+            TransactionUtils.afterCommit(() -> taskCounterCache.candidateGroupAdded(taskId, groupId));
+        } else if (type == ActivitiEventType.ENTITY_DELETED) {
+            TransactionUtils.afterCommit(() -> taskCounterCache.candidateGroupRemoved(taskId, groupId));
+        }
+    }
+
+    private static boolean isCandidateGroup(IdentityLinkEntity identityLink) {
+        return IdentityLinkType.CANDIDATE.equals(identityLink.getType()) && identityLink.getGroupId() != null;
+    }
+
+    /**
+     * 缓存更新失败不影响流程流转，定时对账时修正
+     */
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+}
@@ -0,0 +1,70 @@
+package com.neimeng.workflow.listener;
+
+import com.neimeng.workflow.entity.enums.TaskEventTypeEnum;
+import com.neimeng.workflow.notification.TaskNotification;
+import com.neimeng.workflow.notification.TaskNotificationHub;
+import com.neimeng.workflow.utils.TransactionUtils;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.task.IdentityLinkType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流程引擎事件监听，任务创建、指派、完成时推送给办理人和候选组
+ * <p>
+ * 事务提交后再推送，回滚的修改不会推送
+ */
+@Component
+public class TaskNotificationEventListener implements ActivitiEventListener {
+
+    @Autowired
+    private TaskNotificationHub taskNotificationHub;
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        TaskEventTypeEnum type = toEventType(event.getType());
+        if (type == null || !(event instanceof ActivitiEntityEvent)
+                || !(((ActivitiEntityEvent) event).getEntity() instanceof TaskEntity)) {
+            return;
+        }
+        TaskEntity task = (TaskEntity) ((ActivitiEntityEvent) event).getEntity();
+        TaskNotification notification = new TaskNotification(type, task.getId(), task.getName(),
+                task.getProcessInstanceId(), task.getAssignee());
+        List<String> candidateGroups = new ArrayList<>();
+        for (IdentityLinkEntity identityLink : task.getIdentityLinks()) {
+            if (IdentityLinkType.CANDIDATE.equals(identityLink.getType()) && identityLink.getGroupId() != null) {
+                candidateGroups.add(identityLink.getGroupId());
+            }
+        }
+        TransactionUtils.afterCommit(() -> taskNotificationHub.publish(notification, notification.getAssignee(), candidateGroups));
+    }
+
+    private static TaskEventTypeEnum toEventType(ActivitiEventType eventType) {
+        switch (eventType) {
+            case TASK_CREATED:
+                return TaskEventTypeEnum.CREATED;
+            case TASK_ASSIGNED:
+                return TaskEventTypeEnum.ASSIGNED;
+            case TASK_COMPLETED:
+                return TaskEventTypeEnum.COMPLETED;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 推送失败不影响流程流转
+     */
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+}
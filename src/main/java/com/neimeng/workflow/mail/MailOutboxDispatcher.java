@@ -0,0 +1,170 @@
+package com.neimeng.workflow.mail;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.neimeng.workflow.dao.MailOutboxMapper;
+import com.neimeng.workflow.entity.enums.MailStatusEnum;
+import com.neimeng.workflow.entity.pojo.MailOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 发件箱发送
+ * <p>
+ * 说明：后台线程按批取出到期的待发送邮件逐封发送，邮件任务所在事务提交后立即唤醒，否则按固定间隔轮询；
+ * 发送前先领取，领取时把下次发送时间改为租约到期时间，多个节点不会重复发送，发送中进程退出的邮件在租约到期后重发。
+ * 发送失败按指数退避重试，超过最大次数后标记为发送失败，需要人工处理
+ */
+@Slf4j
+@Component
+public class MailOutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final MailOutboxMapper mailOutboxMapper;
+
+    private final MailSender mailSender;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffSeconds;
+
+    private final long maxBackoffSeconds;
+
+    private final long leaseSeconds;
+
+    private final long pollIntervalMillis;
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    private ScheduledExecutorService executor;
+
+    public MailOutboxDispatcher(MailOutboxMapper mailOutboxMapper, MailSender mailSender,
+                                @Value("${process.mail.outbox.batch-size:50}") int batchSize,
+                                @Value("${process.mail.outbox.max-attempts:8}") int maxAttempts,
+                                @Value("${process.mail.outbox.initial-backoff-seconds:30}") long initialBackoffSeconds,
+                                @Value("${process.mail.outbox.max-backoff-seconds:3600}") long maxBackoffSeconds,
+                                @Value("${process.mail.outbox.lease-seconds:300}") long leaseSeconds,
+                                @Value("${process.mail.outbox.poll-interval-millis:5000}") long pollIntervalMillis) {
+        this.mailOutboxMapper = mailOutboxMapper;
+        this.mailSender = mailSender;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffSeconds = initialBackoffSeconds;
+        this.maxBackoffSeconds = maxBackoffSeconds;
+        this.leaseSeconds = leaseSeconds;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("mail-outbox-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::drainSafely, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 有新邮件写入发件箱，尽快发送
+     */
+    public void wakeUp() {
+        if (executor == null || !wakeUpPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                wakeUpPending.set(false);
+                drainSafely();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeUpPending.set(false);
+        }
+    }
+
+    /**
+     * 发送所有到期的邮件
+     *
+     * @return 发送成功的数量
+     */
+    public int drain() {
+        int sent = 0;
+        while (true) {
+            List<MailOutbox> mails = mailOutboxMapper.selectDue(new Date(), batchSize);
+            for (MailOutbox mail : mails) {
+                if (dispatch(mail)) {
+                    sent++;
+                }
+            }
+            if (mails.size() < batchSize) {
+                return sent;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.warn("drain mail outbox failed", e);
+        }
+    }
+
+    /**
+     * 领取并发送一封邮件，被其它节点领取时跳过
+     */
+    private boolean dispatch(MailOutbox mail) {
+        Date leaseTime = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(leaseSeconds));
+        if (mailOutboxMapper.claim(mail.getId(), mail.getNextAttemptTime(), leaseTime) == 0) {
+            return false;
+        }
+        try {
+            mailSender.send(mail);
+        } catch (Exception e) {
+            onFailure(mail, e);
+            return false;
+        }
+        mailOutboxMapper.updateAttempt(mail.getId(), MailStatusEnum.SENT.getCode(), new Date(), null);
+        return true;
+    }
+
+    private void onFailure(MailOutbox mail, Exception e) {
+        int attempts = mail.getAttempts() == null ? 1 : mail.getAttempts() + 1;
+        String error = StringUtils.abbreviate(e.getClass().getSimpleName() + ": " + e.getMessage(), MAX_ERROR_LENGTH);
+        if (attempts >= maxAttempts) {
+            log.error("send mail failed, give up, id=[{}], to=[{}], attempts=[{}]", mail.getId(), mail.getMailTo(), attempts, e);
+            mailOutboxMapper.updateAttempt(mail.getId(), MailStatusEnum.FAILED.getCode(), new Date(), error);
+            return;
+        }
+        long backoffSeconds = getBackoffSeconds(attempts);
+        log.warn("send mail failed, retry in [{}s], id=[{}], attempts=[{}], error=[{}]", backoffSeconds, mail.getId(), attempts, error);
+        mailOutboxMapper.updateAttempt(mail.getId(), MailStatusEnum.PENDING.getCode(),
+                new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(backoffSeconds)), error);
+    }
+
+    /**
+     * 第n次失败后等待 initialBackoff * 2^(n-1)，不超过maxBackoff
+     */
+    long getBackoffSeconds(int attempts) {
+        long backoff = initialBackoffSeconds << Math.min(attempts - 1, 30);
+        return Math.min(backoff, maxBackoffSeconds);
+    }
+}
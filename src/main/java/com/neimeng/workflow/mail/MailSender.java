@@ -0,0 +1,17 @@
+package com.neimeng.workflow.mail;
+
+import com.neimeng.workflow.entity.pojo.MailOutbox;
+
+/**
+ * 邮件发送，由发件箱后台线程调用，默认通过SMTP发送
+ */
+public interface MailSender {
+
+    /**
+     * 发送一封邮件
+     *
+     * @param mail
+     * @throws Exception 发送失败，按重试策略稍后重发
+     */
+    void send(MailOutbox mail) throws Exception;
+}
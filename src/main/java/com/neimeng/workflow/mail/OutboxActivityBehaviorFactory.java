@@ -0,0 +1,33 @@
+package com.neimeng.workflow.mail;
+
+import com.neimeng.workflow.dao.MailOutboxMapper;
+import org.activiti.bpmn.model.FieldExtension;
+import org.activiti.engine.impl.bpmn.behavior.MailActivityBehavior;
+import org.activiti.engine.impl.bpmn.helper.ClassDelegate;
+import org.activiti.engine.impl.bpmn.parser.FieldDeclaration;
+import org.activiti.engine.impl.bpmn.parser.factory.DefaultActivityBehaviorFactory;
+
+import java.util.List;
+
+/**
+ * 邮件任务改为写入发件箱，其它节点与引擎默认行为相同
+ */
+public class OutboxActivityBehaviorFactory extends DefaultActivityBehaviorFactory {
+
+    private final MailOutboxMapper mailOutboxMapper;
+
+    private final Runnable onEnqueued;
+
+    public OutboxActivityBehaviorFactory(MailOutboxMapper mailOutboxMapper, Runnable onEnqueued) {
+        this.mailOutboxMapper = mailOutboxMapper;
+        this.onEnqueued = onEnqueued;
+    }
+
+    @Override
+    protected MailActivityBehavior createMailActivityBehavior(String taskId, List<FieldExtension> fields) {
+        List<FieldDeclaration> fieldDeclarations = createFieldDeclarations(fields);
+        OutboxMailActivityBehavior behavior = new OutboxMailActivityBehavior(mailOutboxMapper, onEnqueued);
+        ClassDelegate.applyFieldDeclaration(fieldDeclarations, behavior);
+        return behavior;
+    }
+}
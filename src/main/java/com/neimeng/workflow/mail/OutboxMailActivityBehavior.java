@@ -0,0 +1,73 @@
+package com.neimeng.workflow.mail;
+
+import com.neimeng.workflow.dao.MailOutboxMapper;
+import com.neimeng.workflow.entity.enums.MailStatusEnum;
+import com.neimeng.workflow.entity.pojo.MailOutbox;
+import com.neimeng.workflow.utils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.Expression;
+import org.activiti.engine.impl.bpmn.behavior.MailActivityBehavior;
+
+import java.util.Date;
+
+/**
+ * 邮件任务：在流程事务中写入发件箱后直接离开节点，不等待SMTP
+ * <p>
+ * 字段与引擎自带的邮件任务相同，邮件由 MailOutboxDispatcher 在事务提交后发送；不支持附件
+ */
+@Slf4j
+public class OutboxMailActivityBehavior extends MailActivityBehavior {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient MailOutboxMapper mailOutboxMapper;
+
+    private final transient Runnable onEnqueued;
+
+    public OutboxMailActivityBehavior(MailOutboxMapper mailOutboxMapper, Runnable onEnqueued) {
+        this.mailOutboxMapper = mailOutboxMapper;
+        this.onEnqueued = onEnqueued;
+    }
+
+    @Override
+    public void execute(DelegateExecution execution) {
+        String toStr = getStringFromField(to, execution);
+        if (toStr == null) {
+            throw new ActivitiException("邮件任务没有收件人，activityId=" + execution.getCurrentActivityId());
+        }
+        if (attachments != null) {
+            log.warn("mail attachments are not supported by outbox, activityId=[{}]", execution.getCurrentActivityId());
+        }
+        MailOutbox mail = new MailOutbox();
+        mail.setProcInstId(execution.getProcessInstanceId());
+        mail.setActivityId(execution.getCurrentActivityId());
+        mail.setMailFrom(getStringFromField(from, execution));
+        mail.setMailTo(toStr);
+        mail.setMailCc(getStringFromField(cc, execution));
+        mail.setMailBcc(getStringFromField(bcc, execution));
+        mail.setSubject(getStringFromField(subject, execution));
+        mail.setTextContent(getContent(text, textVar, execution));
+        mail.setHtmlContent(getContent(html, htmlVar, execution));
+        mail.setCharset(getStringFromField(charset, execution));
+        mail.setStatus(MailStatusEnum.PENDING.getCode());
+        mail.setAttempts(0);
+        mail.setNextAttemptTime(new Date());
+        mailOutboxMapper.insert(mail);
+        TransactionUtils.afterCommit(onEnqueued);
+        leave(execution);
+    }
+
+    /**
+     * 内容字段为空时，从变量字段指定的流程变量中取
+     */
+    private String getContent(Expression content, Expression contentVar, DelegateExecution execution) {
+        String value = getStringFromField(content, execution);
+        if (value == null && contentVar != null) {
+            Object variable = execution.getVariable(getStringFromField(contentVar, execution));
+            value = variable == null ? null : variable.toString();
+        }
+        return value;
+    }
+}
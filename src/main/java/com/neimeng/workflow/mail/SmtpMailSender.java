@@ -0,0 +1,93 @@
+package com.neimeng.workflow.mail;
+
+import com.neimeng.workflow.entity.pojo.MailOutbox;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.mail.Email;
+import org.apache.commons.mail.EmailException;
+import org.apache.commons.mail.HtmlEmail;
+import org.apache.commons.mail.SimpleEmail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 通过SMTP发送邮件
+ */
+@Component
+public class SmtpMailSender implements MailSender {
+
+    private final String host;
+
+    private final int port;
+
+    private final boolean useSsl;
+
+    private final String username;
+
+    private final String password;
+
+    private final String defaultFrom;
+
+    private final int timeoutMillis;
+
+    public SmtpMailSender(@Value("${process.mail.host:}") String host,
+                          @Value("${process.mail.port:25}") int port,
+                          @Value("${process.mail.use-ssl:false}") boolean useSsl,
+                          @Value("${process.mail.username:}") String username,
+                          @Value("${process.mail.password:}") String password,
+                          @Value("${process.mail.default-from:}") String defaultFrom,
+                          @Value("${process.mail.timeout-millis:10000}") int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.useSsl = useSsl;
+        this.username = username;
+        this.password = password;
+        this.defaultFrom = defaultFrom;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void send(MailOutbox mail) throws EmailException {
+        Email email;
+        if (StringUtils.isNotBlank(mail.getHtmlContent())) {
+            HtmlEmail htmlEmail = new HtmlEmail();
+            htmlEmail.setHtmlMsg(mail.getHtmlContent());
+            if (StringUtils.isNotBlank(mail.getTextContent())) {
+                htmlEmail.setTextMsg(mail.getTextContent());
+            }
+            email = htmlEmail;
+        } else {
+            email = new SimpleEmail();
+            email.setMsg(StringUtils.defaultIfEmpty(mail.getTextContent(), " "));
+        }
+        if (StringUtils.isNotBlank(mail.getCharset())) {
+            email.setCharset(mail.getCharset());
+        }
+        email.setHostName(host);
+        email.setSmtpPort(port);
+        email.setSSLOnConnect(useSsl);
+        if (useSsl) {
+            email.setSslSmtpPort(String.valueOf(port));
+        }
+        if (StringUtils.isNotBlank(username)) {
+            email.setAuthentication(username, password);
+        }
+        email.setSocketConnectionTimeout(timeoutMillis);
+        email.setSocketTimeout(timeoutMillis);
+        email.setFrom(StringUtils.defaultIfBlank(mail.getMailFrom(), defaultFrom));
+        email.setSubject(mail.getSubject());
+        for (String to : split(mail.getMailTo())) {
+            email.addTo(to);
+        }
+        for (String cc : split(mail.getMailCc())) {
+            email.addCc(cc);
+        }
+        for (String bcc : split(mail.getMailBcc())) {
+            email.addBcc(bcc);
+        }
+        email.send();
+    }
+
+    private static String[] split(String addresses) {
+        return StringUtils.isBlank(addresses) ? new String[0] : StringUtils.split(addresses.replace(" ", ""), ',');
+    }
+}
@@ -0,0 +1,30 @@
+package com.neimeng.workflow.notification;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 一个客户端连接，由推送线程串行调用，同一连接不会被并发调用
+ */
+public interface NotificationSink {
+
+    /**
+     * 发送一批事件
+     *
+     * @param notifications
+     * @throws IOException 连接已断开，连接会被移除
+     */
+    void send(List<TaskNotification> notifications) throws IOException;
+
+    /**
+     * 发送心跳，用于发现已断开的连接
+     *
+     * @throws IOException 连接已断开，连接会被移除
+     */
+    void heartbeat() throws IOException;
+
+    /**
+     * 关闭连接
+     */
+    void close();
+}
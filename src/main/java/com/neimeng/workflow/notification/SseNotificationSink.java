@@ -0,0 +1,39 @@
+package com.neimeng.workflow.notification;
+
+import com.alibaba.fastjson.JSON;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * SSE连接，每个事件一条消息，事件名为事件类型
+ */
+public class SseNotificationSink implements NotificationSink {
+
+    private final SseEmitter emitter;
+
+    public SseNotificationSink(SseEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void send(List<TaskNotification> notifications) throws IOException {
+        for (TaskNotification notification : notifications) {
+            emitter.send(SseEmitter.event()
+                    .name(notification.getType().name())
+                    .data(JSON.toJSONString(notification), MediaType.APPLICATION_JSON));
+        }
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        emitter.send(SseEmitter.event().comment("heartbeat"));
+    }
+
+    @Override
+    public void close() {
+        emitter.complete();
+    }
+}
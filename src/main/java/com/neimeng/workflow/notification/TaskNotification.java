@@ -0,0 +1,50 @@
+package com.neimeng.workflow.notification;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import com.neimeng.workflow.entity.enums.TaskEventTypeEnum;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.Date;
+
+/**
+ * 推送给客户端的任务事件
+ */
+@Getter
+@Setter
+@ToString
+public class TaskNotification {
+
+    private TaskEventTypeEnum type;
+
+    private String taskId;
+
+    private String taskName;
+
+    private String procInstId;
+
+    /**
+     * 任务办理人，候选任务还没有领取时为空
+     */
+    private String assignee;
+
+    @JSONField(format = "yyyy-MM-dd HH:mm:ss")
+    private Date eventTime;
+
+    public TaskNotification() {
+    }
+
+    public TaskNotification(TaskEventTypeEnum type, String taskId, String taskName, String procInstId, String assignee) {
+        this.type = type;
+        this.taskId = taskId;
+        this.taskName = taskName;
+        this.procInstId = procInstId;
+        this.assignee = assignee;
+        this.eventTime = new Date();
+    }
+
+    public static TaskNotification resync() {
+        return new TaskNotification(TaskEventTypeEnum.RESYNC, null, null, null, null);
+    }
+}
@@ -0,0 +1,292 @@
+package com.neimeng.workflow.notification;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.neimeng.workflow.entity.vo.TaskNotificationMetricsVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 任务事件推送
+ * <p>
+ * 说明：客户端按用户和候选组订阅，任务创建、指派、完成时推送给办理人和候选组的订阅连接，代替轮询待办接口。
+ * 每个连接有一个按任务合并的有界缓冲区，同一任务还没发出的事件只保留最新的一条；
+ * 连接太慢导致缓冲区满时丢弃缓冲的事件，改为发送一条RESYNC，客户端收到后重新查询待办。
+ * 推送由独立线程池执行，同一连接同时只有一个线程在发送，慢连接不会阻塞流程事务
+ */
+@Slf4j
+@Component
+public class TaskNotificationHub {
+
+    private final int bufferSize;
+
+    private final ThreadPoolExecutor dispatcher;
+
+    private final ScheduledExecutorService heartbeatScheduler;
+
+    private final Map<String, Set<Connection>> userConnections = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Connection>> groupConnections = new ConcurrentHashMap<>();
+
+    private final LongAdder publishedCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final LongAdder overflowCount = new LongAdder();
+
+    public TaskNotificationHub(@Value("${process.notification.buffer-size:100}") int bufferSize,
+                               @Value("${process.notification.dispatch-threads:2}") int dispatchThreads,
+                               @Value("${process.notification.heartbeat-seconds:25}") long heartbeatSeconds) {
+        this.bufferSize = bufferSize;
+        // 每个连接同时最多一个推送任务，队列长度不超过连接数
+        this.dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("task-notification-%d").setDaemon(true).build());
+        this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("task-notification-heartbeat-%d").setDaemon(true).build());
+        if (heartbeatSeconds > 0) {
+            heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 订阅用户和候选组的任务事件
+     *
+     * @param userName
+     * @param candidateGroups 可以为空
+     * @param sink            客户端连接
+     * @return 订阅，连接断开时调用unsubscribe
+     */
+    public Subscription subscribe(String userName, Collection<String> candidateGroups, NotificationSink sink) {
+        Set<String> groups = candidateGroups == null ? Collections.emptySet() : new HashSet<>(candidateGroups);
+        Connection connection = new Connection(userName, groups, sink);
+        userConnections.computeIfAbsent(userName, k -> ConcurrentHashMap.newKeySet()).add(connection);
+        for (String group : groups) {
+            groupConnections.computeIfAbsent(group, k -> ConcurrentHashMap.newKeySet()).add(connection);
+        }
+        log.debug("task notification subscribed, userName=[{}], groups=[{}]", userName, groups);
+        return new Subscription(connection);
+    }
+
+    /**
+     * 推送给用户和候选组，不等待发送完成
+     *
+     * @param notification
+     * @param userName        可以为空
+     * @param candidateGroups 可以为空
+     */
+    public void publish(TaskNotification notification, String userName, Collection<String> candidateGroups) {
+        Set<Connection> targets = new LinkedHashSet<>();
+        if (userName != null) {
+            targets.addAll(userConnections.getOrDefault(userName, Collections.emptySet()));
+        }
+        if (candidateGroups != null) {
+            for (String group : candidateGroups) {
+                targets.addAll(groupConnections.getOrDefault(group, Collections.emptySet()));
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        publishedCount.increment();
+        for (Connection connection : targets) {
+            connection.offer(notification);
+        }
+    }
+
+    /**
+     * 推送监控信息
+     *
+     * @return
+     */
+    public TaskNotificationMetricsVo getMetrics() {
+        TaskNotificationMetricsVo metrics = new TaskNotificationMetricsVo();
+        metrics.setConnectionCount(userConnections.values().stream().mapToInt(Set::size).sum());
+        metrics.setUserCount(userConnections.size());
+        metrics.setPendingDispatchCount(dispatcher.getQueue().size());
+        metrics.setPublishedCount(publishedCount.sum());
+        metrics.setCoalescedCount(coalescedCount.sum());
+        metrics.setOverflowCount(overflowCount.sum());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatScheduler.shutdownNow();
+        for (Set<Connection> connections : userConnections.values()) {
+            connections.forEach(Connection::close);
+        }
+        dispatcher.shutdownNow();
+    }
+
+    private void heartbeat() {
+        for (Set<Connection> connections : userConnections.values()) {
+            connections.forEach(connection -> connection.schedule(true));
+        }
+    }
+
+    private void remove(Connection connection) {
+        removeFrom(userConnections, connection.userName, connection);
+        for (String group : connection.groups) {
+            removeFrom(groupConnections, group, connection);
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<Connection>> connections, String key, Connection connection) {
+        connections.computeIfPresent(key, (k, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * 订阅
+     */
+    public static final class Subscription {
+
+        private final Connection connection;
+
+        private Subscription(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * 取消订阅并关闭连接，可以重复调用
+         */
+        public void unsubscribe() {
+            connection.close();
+        }
+    }
+
+    private final class Connection {
+
+        private final String userName;
+
+        private final Set<String> groups;
+
+        private final NotificationSink sink;
+
+        /**
+         * 按任务ID合并的待发送事件
+         */
+        private final LinkedHashMap<String, TaskNotification> buffer = new LinkedHashMap<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private boolean overflow;
+
+        private volatile boolean closed;
+
+        private Connection(String userName, Set<String> groups, NotificationSink sink) {
+            this.userName = userName;
+            this.groups = groups;
+            this.sink = sink;
+        }
+
+        private void offer(TaskNotification notification) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (overflow) {
+                    // 已经要发送RESYNC，客户端会重新查询
+                    coalescedCount.increment();
+                    return;
+                }
+                if (buffer.remove(notification.getTaskId()) != null) {
+                    coalescedCount.increment();
+                } else if (buffer.size() >= bufferSize) {
+                    overflowCount.increment();
+                    log.warn("task notification buffer overflow, userName=[{}], dropped=[{}]", userName, buffer.size());
+                    buffer.clear();
+                    overflow = true;
+                }
+                if (!overflow) {
+                    buffer.put(notification.getTaskId(), notification);
+                }
+            }
+            schedule(false);
+        }
+
+        /**
+         * 没有推送任务时提交一个，已有推送任务时由它发送新的事件
+         */
+        private void schedule(boolean heartbeat) {
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                dispatcher.execute(() -> dispatch(heartbeat));
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+
+        private void dispatch(boolean heartbeat) {
+            try {
+                if (heartbeat) {
+                    sink.heartbeat();
+                }
+                while (true) {
+                    List<TaskNotification> batch;
+                    synchronized (this) {
+                        if (closed) {
+                            return;
+                        }
+                        if (overflow) {
+                            overflow = false;
+                            batch = Collections.singletonList(TaskNotification.resync());
+                        } else if (buffer.isEmpty()) {
+                            scheduled.set(false);
+                            return;
+                        } else {
+                            batch = new ArrayList<>(buffer.values());
+                            buffer.clear();
+                        }
+                    }
+                    sink.send(batch);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("task notification connection closed, userName=[{}]", userName, e);
+                close();
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                buffer.clear();
+            }
+            remove(this);
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                log.debug("close task notification connection failed, userName=[{}]", userName, e);
+            }
+        }
+    }
+}
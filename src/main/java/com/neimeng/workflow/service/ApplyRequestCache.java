@@ -0,0 +1,50 @@
+package com.neimeng.workflow.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.neimeng.workflow.entity.vo.TaskVo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 申请流程的本地缓存，幂等键 -> 申请返回的第一个任务，客户端重试时直接返回
+ * <p>
+ * 说明：只缓存在当前节点，流程结束时只清除当前节点的缓存；其它节点在缓存过期前，
+ * 同一幂等键的重新申请仍会返回已结束流程的任务，过期时间应设置得较短
+ */
+@Component
+public class ApplyRequestCache {
+
+    private final Cache<String, TaskVo> cache;
+
+    public ApplyRequestCache(@Value("${process.apply.idempotent.cache-seconds:60}") long cacheSeconds,
+                             @Value("${process.apply.idempotent.cache-max-size:10000}") long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(cacheSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public TaskVo get(String requestKey) {
+        return cache.getIfPresent(requestKey);
+    }
+
+    public void put(String requestKey, TaskVo taskVo) {
+        cache.put(requestKey, taskVo);
+    }
+
+    /**
+     * 流程结束后幂等键已释放，同一数据集可以再次申请，清除这些流程的申请结果
+     *
+     * @param processInstanceIds
+     */
+    public void evict(Collection<String> processInstanceIds) {
+        Set<String> ids = new HashSet<>(processInstanceIds);
+        cache.asMap().values().removeIf(taskVo -> ids.contains(taskVo.getProcInstId()));
+    }
+}
@@ -3,35 +3,58 @@ package com.neimeng.workflow.service;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import com.google.common.collect.Lists;
+import com.neimeng.workflow.command.StartProcessAndAssignCmd;
 import com.neimeng.workflow.dao.ProcessDatasetMapper;
 import com.neimeng.workflow.dao.ProcessTaskMapper;
+import com.neimeng.workflow.entity.enums.PriorityEnum;
 import com.neimeng.workflow.entity.enums.ProcessStatusEnum;
 import com.neimeng.workflow.entity.params.ApplyDatasetInfo;
+import com.neimeng.workflow.entity.params.BatchApplyDatasetInfo;
+import com.neimeng.workflow.entity.params.BatchProcessApproval;
 import com.neimeng.workflow.entity.params.ProcessApproval;
 import com.neimeng.workflow.entity.pojo.ProcessDataset;
 import com.neimeng.workflow.entity.pojo.ProcessTask;
 import com.neimeng.workflow.entity.query.BasePageQuery;
+import com.neimeng.workflow.entity.query.CursorPageQuery;
+import com.neimeng.workflow.entity.query.InboxQuery;
+import com.neimeng.workflow.entity.vo.BatchItemVo;
+import com.neimeng.workflow.entity.vo.BatchResultVo;
+import com.neimeng.workflow.entity.vo.CursorPageVo;
+import com.neimeng.workflow.entity.vo.TaskCountVo;
 import com.neimeng.workflow.entity.vo.TaskVo;
 import com.neimeng.workflow.exception.GlobalException;
+import com.neimeng.workflow.notification.SseNotificationSink;
+import com.neimeng.workflow.notification.TaskNotificationHub;
+import com.neimeng.workflow.service.process.ProcessRepositoryService;
 import com.neimeng.workflow.service.process.ProcessRuntimeService;
 import com.neimeng.workflow.service.process.ProcessTaskService;
+import com.neimeng.workflow.utils.PageTokenUtils;
 import com.neimeng.workflow.utils.SessionUtils;
+import com.neimeng.workflow.utils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.repository.ProcessDefinition;
 import org.activiti.engine.runtime.ProcessInstance;
 import org.activiti.engine.task.Task;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.*;
+import java.util.stream.Collectors;
 
-import static com.neimeng.workflow.utils.WorkflowConstants.DEFAULT_DS_PROCESS_KEY;
 import static com.neimeng.workflow.utils.WorkflowConstants.APPROVAL_RESULT_VARIABLE_NAME;
 
 /**
  * 数据集-流程相关的Service
  */
+@Slf4j
 @Service
 public class DatasetProcessService {
 
@@ -41,12 +64,46 @@ public class DatasetProcessService {
     @Autowired
     private ProcessTaskService processTaskService;
 
+    @Autowired
+    private ProcessRepositoryService processRepositoryService;
+
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    private static final int MAX_PAGE_SIZE = ProcessTaskService.MAX_PAGE_SIZE;
+
     @Autowired
     private ProcessDatasetMapper processDatasetMapper;
 
     @Autowired
     private ProcessTaskMapper processTaskMapper;
 
+    @Autowired
+    private ProcessTaskWriter processTaskWriter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplyRequestCache applyRequestCache;
+
+    @Autowired
+    private TaskNotificationHub taskNotificationHub;
+
+    @Value("${process.approval.batch.max-size:500}")
+    private int batchMaxSize;
+
+    @Value("${process.approval.batch.chunk-size:50}")
+    private int batchChunkSize;
+
+    @Value("${process.apply.batch.max-size:500}")
+    private int applyBatchMaxSize;
+
+    @Value("${process.apply.batch.chunk-size:50}")
+    private int applyBatchChunkSize;
+
+    @Value("${process.notification.sse-timeout-millis:1800000}")
+    private long sseTimeoutMillis;
+
     /**
      * 获取用户需要处理的任务
      *
@@ -57,39 +114,362 @@ public class DatasetProcessService {
 //        String userName = SessionUtils.getCurrentUserName(request);
 
         // 分页查询用户的任务
-        PageHelper.startPage(pageQuery.getPageNum(), pageQuery.getPageSize());
+        PageHelper.startPage(pageQuery.getPageNum(), pageQuery.getPageSize(), pageQuery.isCount());
         Page<TaskVo> taskVoPage = processDatasetMapper.getTasksByAssignee(userName);
 
         return new PageInfo(taskVoPage);
     }
 
+    /**
+     * 游标分页获取用户需要处理的任务
+     * <p>
+     * 说明：按任务创建时间和任务ID倒序，从上一页最后一条之后查询，不使用OFFSET，页数再深耗时也不变；
+     * 多查一条判断是否有下一页，默认不查询总数
+     *
+     * @param pageQuery
+     * @param userName
+     * @return
+     */
+    public CursorPageVo<TaskVo> getUserTaskByCursor(CursorPageQuery pageQuery, String userName) {
+        int pageSize = getPageSize(pageQuery.getPageSize());
+        Date createTime = null;
+        String taskId = null;
+        if (StringUtils.isNotBlank(pageQuery.getPageToken())) {
+            PageTokenUtils.PageToken pageToken = PageTokenUtils.decode(pageQuery.getPageToken());
+            createTime = pageToken.getCreateTime();
+            taskId = pageToken.getId();
+        }
+        List<TaskVo> taskVos = processDatasetMapper.getTasksByAssigneeAfter(userName, createTime, taskId, pageSize + 1);
+
+        CursorPageVo<TaskVo> page = new CursorPageVo<>();
+        page.setHasMore(taskVos.size() > pageSize);
+        if (page.isHasMore()) {
+            taskVos = taskVos.subList(0, pageSize);
+            TaskVo last = taskVos.get(pageSize - 1);
+            page.setNextPageToken(PageTokenUtils.encode(last.getTaskCreateTime(), last.getTaskId()));
+        }
+        page.setList(taskVos);
+        if (pageQuery.isCount()) {
+            page.setTotal(processDatasetMapper.countTasksByAssignee(userName));
+        }
+        return page;
+    }
+
+    /**
+     * 获取用户待办，包括办理人是当前用户的任务和当前用户或所属组的候选任务
+     * <p>
+     * 说明：一条SQL完成合并，按优先级、任务创建时间和任务ID倒序游标分页，没有优先级的按一般处理
+     *
+     * @param inboxQuery
+     * @param userName
+     * @return
+     */
+    public CursorPageVo<TaskVo> getInbox(InboxQuery inboxQuery, String userName) {
+        int pageSize = getPageSize(inboxQuery.getPageSize());
+        List<String> candidateGroups = inboxQuery.getCandidateGroups() != null
+                ? inboxQuery.getCandidateGroups() : processTaskService.getCandidateGroups(userName);
+        int defaultPriority = PriorityEnum.NOMAL.getCode();
+        PageTokenUtils.PageToken pageToken = StringUtils.isNotBlank(inboxQuery.getPageToken())
+                ? PageTokenUtils.decodeWithPriority(inboxQuery.getPageToken()) : null;
+        List<TaskVo> taskVos = processDatasetMapper.getInboxTasks(userName, candidateGroups, defaultPriority,
+                pageToken == null ? null : pageToken.getPriority(),
+                pageToken == null ? null : pageToken.getCreateTime(),
+                pageToken == null ? null : pageToken.getId(), pageSize + 1);
+
+        CursorPageVo<TaskVo> page = new CursorPageVo<>();
+        page.setHasMore(taskVos.size() > pageSize);
+        if (page.isHasMore()) {
+            taskVos = taskVos.subList(0, pageSize);
+            TaskVo last = taskVos.get(pageSize - 1);
+            int priority = last.getPriority() == null ? defaultPriority : last.getPriority();
+            page.setNextPageToken(PageTokenUtils.encode(priority, last.getTaskCreateTime(), last.getTaskId()));
+        }
+        page.setList(taskVos);
+        if (inboxQuery.isCount()) {
+            page.setTotal(processDatasetMapper.countInboxTasks(userName, candidateGroups));
+        }
+        return page;
+    }
+
+    /**
+     * 获取待办数量，用于页面角标轮询
+     * <p>
+     * 候选组由调用方传入，不再查询用户所在的组，缓存可用时不查询数据库
+     *
+     * @param userName
+     * @param candidateGroups
+     * @return
+     */
+    public TaskCountVo getTaskCount(String userName, List<String> candidateGroups) {
+        TaskCountVo taskCountVo = new TaskCountVo();
+        taskCountVo.setAssigneeCount(processTaskService.getTaskCount(userName));
+        if (candidateGroups != null) {
+            for (String candidateGroup : candidateGroups) {
+                taskCountVo.getGroupCounts().put(candidateGroup, processTaskService.getTaskCountByCandidateGroup(candidateGroup));
+            }
+        }
+        return taskCountVo;
+    }
+
+    /**
+     * 订阅任务事件，任务创建、指派、完成时推送给用户
+     *
+     * @param userName
+     * @param candidateGroups 为空时查询用户所在的组
+     * @return
+     */
+    public SseEmitter subscribeTasks(String userName, List<String> candidateGroups) {
+        List<String> groups = candidateGroups != null ? candidateGroups : processTaskService.getCandidateGroups(userName);
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        TaskNotificationHub.Subscription subscription = taskNotificationHub.subscribe(userName, groups, new SseNotificationSink(emitter));
+        emitter.onCompletion(subscription::unsubscribe);
+        emitter.onTimeout(subscription::unsubscribe);
+        emitter.onError(e -> subscription.unsubscribe());
+        return emitter;
+    }
+
     /**
      * 申请流程
+     * <p>
+     * 说明：按幂等键去重，客户端超时重试时返回第一次申请的任务，不会重复启动流程。
+     * 先查本地缓存和数据库，同时提交的重复申请由唯一索引拦截，回滚后返回已有的申请
      *
      * @param datasetBaseInfo
      * @param request
      */
-    @Transactional(rollbackFor = Exception.class)
     public TaskVo applyDataSet(ApplyDatasetInfo datasetBaseInfo, HttpServletRequest request) {
         String currentUserName = SessionUtils.getCurrentUserName(request);
+        String requestKey = getRequestKey(datasetBaseInfo);
+        Map<String, TaskVo> appliedTasks = getAppliedTasks(Collections.singletonList(requestKey));
+        if (appliedTasks.containsKey(requestKey)) {
+            log.info("dataset already applied, requestKey=[{}]", requestKey);
+            return appliedTasks.get(requestKey);
+        }
+
+        TaskVo taskVo;
+        try {
+            taskVo = transactionTemplate.execute(status -> {
+                // TODO 获取当前用户相关的流程实例，如果当前用户没有创建的流程，则使用默认流程
+                // 这个key取值是在新建model时，下面信息栏填写流程名称
+                // String processDefKey = DEFAULT_DS_PROCESS_KEY;
+                // 1、启动流程实例，并设置第一个任务的审批人：默认审批流程为默认审批人，其它流程为数据集创建人
+                StartProcessAndAssignCmd.Result result = startProcess(datasetBaseInfo);
+
+                // 2、新增流程实例和业务关联信息
+                processDatasetMapper.insertSelective(buildProcessDataset(datasetBaseInfo, requestKey, currentUserName, result.getProcessInstance()));
+
+                Task task = result.getTask();
+                // 会返回任务processInstanceId（act_hi_procinst）和taskId（act_ru_task）
+                return task == null ? null : new TaskVo(task);
+            });
+        } catch (DuplicateKeyException e) {
+            log.info("dataset applied concurrently, requestKey=[{}]", requestKey);
+            return getAppliedTask(requestKey);
+        }
+        if (taskVo != null) {
+            applyRequestCache.put(requestKey, taskVo);
+        }
+        return taskVo;
+    }
+
+    /**
+     * 批量申请流程
+     * <p>
+     * 说明：先一次查询校验全部流程定义，重复提交、流程不存在或已挂起的直接记为失败，已经申请过的直接返回原来的任务；
+     * 其余按批在独立事务中启动流程，业务关联信息批量新增。某一批失败时整批回滚，再逐个重试以确定失败的申请
+     *
+     * @param batchApply
+     * @param request
+     * @return 每个数据集的申请结果，成功时为第一个任务
+     */
+    public BatchResultVo batchApplyDataSet(BatchApplyDatasetInfo batchApply, HttpServletRequest request) {
+        List<ApplyDatasetInfo> applications = batchApply.getApplications();
+        if (applications.size() > applyBatchMaxSize) {
+            throw new GlobalException("一次最多申请" + applyBatchMaxSize + "个数据集");
+        }
+        String currentUserName = SessionUtils.getCurrentUserName(request);
+        BatchResultVo result = new BatchResultVo();
+        Map<String, TaskVo> appliedTasks = getAppliedTasks(
+                applications.stream().map(this::getRequestKey).collect(Collectors.toList()));
+        Map<String, ProcessDefinition> definitionMap = processRepositoryService.getProcessDefinitionsByIds(
+                applications.stream().map(ApplyDatasetInfo::getProcessDefKey).collect(Collectors.toList()));
+
+        List<ApplyDatasetInfo> validApplications = new ArrayList<>(applications.size());
+        Set<String> requestKeys = new HashSet<>();
+        for (ApplyDatasetInfo application : applications) {
+            String itemId = String.valueOf(application.getDataSetId());
+            String requestKey = getRequestKey(application);
+            if (!requestKeys.add(requestKey)) {
+                result.add(BatchItemVo.failure(itemId, "数据集重复提交"));
+                continue;
+            }
+            if (appliedTasks.containsKey(requestKey)) {
+                result.add(BatchItemVo.success(itemId, appliedTasks.get(requestKey)));
+                continue;
+            }
+            ProcessDefinition processDefinition = definitionMap.get(application.getProcessDefKey());
+            if (processDefinition == null) {
+                result.add(BatchItemVo.failure(itemId, "流程定义不存在"));
+            } else if (processDefinition.isSuspended()) {
+                result.add(BatchItemVo.failure(itemId, "流程定义已挂起"));
+            } else {
+                validApplications.add(application);
+            }
+        }
+
+        for (List<ApplyDatasetInfo> chunk : Lists.partition(validApplications, applyBatchChunkSize)) {
+            try {
+                result.addAll(cacheApplied(chunk, transactionTemplate.execute(status -> applyChunk(chunk, currentUserName))));
+            } catch (RuntimeException e) {
+                log.warn("batch apply chunk failed, retry one by one, size=[{}]", chunk.size(), e);
+                for (ApplyDatasetInfo application : chunk) {
+                    String itemId = String.valueOf(application.getDataSetId());
+                    try {
+                        List<ApplyDatasetInfo> single = Collections.singletonList(application);
+                        result.addAll(cacheApplied(single, transactionTemplate.execute(status -> applyChunk(single, currentUserName))));
+                    } catch (DuplicateKeyException ex) {
+                        log.info("dataset applied concurrently, requestKey=[{}]", getRequestKey(application));
+                        result.add(BatchItemVo.success(itemId, getAppliedTask(getRequestKey(application))));
+                    } catch (RuntimeException ex) {
+                        log.warn("batch apply failed, dataSetId=[{}]", application.getDataSetId(), ex);
+                        result.add(BatchItemVo.failure(itemId, ex.getMessage()));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在当前事务中申请一批流程
+     *
+     * @param chunk
+     * @param currentUserName
+     * @return 与chunk顺序一致
+     */
+    private List<BatchItemVo> applyChunk(List<ApplyDatasetInfo> chunk, String currentUserName) {
+        List<ProcessDataset> processDatasets = new ArrayList<>(chunk.size());
+        List<BatchItemVo> items = new ArrayList<>(chunk.size());
+        for (ApplyDatasetInfo application : chunk) {
+            StartProcessAndAssignCmd.Result started = startProcess(application);
+            processDatasets.add(buildProcessDataset(application, getRequestKey(application), currentUserName, started.getProcessInstance()));
+            Task task = started.getTask();
+            items.add(BatchItemVo.success(String.valueOf(application.getDataSetId()), task == null ? null : new TaskVo(task)));
+        }
+        // 新增流程实例和业务关联信息
+        processDatasetMapper.insertBatch(processDatasets);
+        return items;
+    }
+
+    /**
+     * 事务提交后缓存申请结果
+     */
+    private List<BatchItemVo> cacheApplied(List<ApplyDatasetInfo> chunk, List<BatchItemVo> items) {
+        for (int i = 0; i < chunk.size(); i++) {
+            Object taskVo = items.get(i).getData();
+            if (taskVo != null) {
+                applyRequestCache.put(getRequestKey(chunk.get(i)), (TaskVo) taskVo);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 幂等键：客户端指定时使用客户端的，否则按数据集ID
+     *
+     * @param datasetBaseInfo
+     * @return
+     */
+    private String getRequestKey(ApplyDatasetInfo datasetBaseInfo) {
+        if (StringUtils.isNotBlank(datasetBaseInfo.getRequestKey())) {
+            return "client:" + datasetBaseInfo.getRequestKey();
+        }
+        return "dataset:" + datasetBaseInfo.getDataSetId();
+    }
+
+    /**
+     * 查询已经申请过的流程，先查本地缓存，再按幂等键查询进行中的申请
+     * <p>
+     * 说明：幂等键由 ApplyRequestEventListener 在流程结束时释放，释放失败时这里忽略已经结束的流程并补充释放
+     *
+     * @param requestKeys
+     * @return 幂等键 -> 流程当前的任务，没有任务时为null；没有申请过的不在结果中
+     */
+    private Map<String, TaskVo> getAppliedTasks(Collection<String> requestKeys) {
+        Map<String, TaskVo> appliedTasks = new HashMap<>();
+        List<String> uncachedKeys = new ArrayList<>();
+        for (String requestKey : new LinkedHashSet<>(requestKeys)) {
+            TaskVo taskVo = applyRequestCache.get(requestKey);
+            if (taskVo != null) {
+                appliedTasks.put(requestKey, taskVo);
+            } else {
+                uncachedKeys.add(requestKey);
+            }
+        }
+        if (uncachedKeys.isEmpty()) {
+            return appliedTasks;
+        }
+        List<ProcessDataset> processDatasets = processDatasetMapper.selectByRequestKeys(uncachedKeys);
+        Map<String, Task> taskMap = processTaskService.getLatestTaskByProInstIds(
+                processDatasets.stream().map(ProcessDataset::getProcInstId).collect(Collectors.toList()));
+        // 没有任务的流程可能已经结束
+        List<String> noTaskIds = processDatasets.stream().map(ProcessDataset::getProcInstId)
+                .filter(id -> !taskMap.containsKey(id)).collect(Collectors.toList());
+        Set<String> runningIds = noTaskIds.isEmpty() ? Collections.emptySet()
+                : processRuntimeService.getRunningProcessInstanceIds(noTaskIds);
+        List<String> endedIds = new ArrayList<>();
+        for (ProcessDataset processDataset : processDatasets) {
+            String processInstanceId = processDataset.getProcInstId();
+            Task task = taskMap.get(processInstanceId);
+            if (task != null) {
+                appliedTasks.put(processDataset.getRequestKey(), new TaskVo(task));
+            } else if (runningIds.contains(processInstanceId)) {
+                appliedTasks.put(processDataset.getRequestKey(), null);
+            } else {
+                endedIds.add(processInstanceId);
+            }
+        }
+        if (!endedIds.isEmpty()) {
+            log.warn("release request keys of ended processes, processInstanceIds=[{}]", endedIds);
+            processDatasetMapper.releaseRequestKeys(endedIds);
+        }
+        return appliedTasks;
+    }
+
+    /**
+     * 唯一索引冲突后查询已有的申请
+     *
+     * @param requestKey
+     * @return
+     */
+    private TaskVo getAppliedTask(String requestKey) {
+        Map<String, TaskVo> appliedTasks = getAppliedTasks(Collections.singletonList(requestKey));
+        if (!appliedTasks.containsKey(requestKey)) {
+            // 已有的申请刚好结束，幂等键已释放
+            throw new GlobalException("数据集正在申请，请稍后重试");
+        }
+        return appliedTasks.get(requestKey);
+    }
 
-        // TODO 获取当前用户相关的流程实例，如果当前用户没有创建的流程，则使用默认流程
-        // 这个key取值是在新建model时，下面信息栏填写流程名称
-        // String processDefKey = DEFAULT_DS_PROCESS_KEY;
-        ProcessInstance processInstance;
-        if(StringUtils.isBlank(datasetBaseInfo.getDataSetCreator())){
+    /**
+     * 启动流程实例，并设置第一个任务的审批人
+     *
+     * @param datasetBaseInfo
+     * @return
+     */
+    private StartProcessAndAssignCmd.Result startProcess(ApplyDatasetInfo datasetBaseInfo) {
+        Map<String, Object> variables = null;
+        if (StringUtils.isBlank(datasetBaseInfo.getDataSetCreator())) {
             // 多人会签时处理
-            Map<String, Object> variables = new HashMap<>();
+            variables = new HashMap<>();
             variables.put("assigneeList", Arrays.asList("aaa", "bbb", "ccc"));
-            processInstance = processRuntimeService.startProcessInstanceByDefId(datasetBaseInfo.getProcessDefKey(), variables);
-        } else {
-            // 1、启动流程实例
-            // takeLeave
-            // ProcessInstance processInstance = processRuntimeService.startProcessInstanceByKey(datasetBaseInfo.getProcessDefKey());
-            // takeLeave:2:5037
-            processInstance = processRuntimeService.startProcessInstanceByDefId(datasetBaseInfo.getProcessDefKey());
         }
-        // 2、新增流程实例和业务关联信息
+        return processRuntimeService.startProcessAndAssign(
+                datasetBaseInfo.getProcessDefKey(), variables, datasetBaseInfo.getDataSetCreator());
+    }
+
+    private ProcessDataset buildProcessDataset(ApplyDatasetInfo datasetBaseInfo, String requestKey, String currentUserName,
+                                               ProcessInstance processInstance) {
         ProcessDataset processDataset = new ProcessDataset();
         processDataset.setDatasetId(datasetBaseInfo.getDataSetId());
         processDataset.setDatasetName(datasetBaseInfo.getDataSetName());
@@ -97,24 +477,8 @@ public class DatasetProcessService {
         processDataset.setPriority(datasetBaseInfo.getPriority().getCode());
         processDataset.setProcInstId(processInstance.getId());
         processDataset.setProcessStatus(ProcessStatusEnum.ONGOING.getCode());
-        processDatasetMapper.insertSelective(processDataset);
-
-        List<Task> taskList = processTaskService.getTaskByProInstId(processInstance.getId());
-        if (null == taskList || taskList.size() == 0){
-            return null;
-        }
-        // 3、如果是默认审批流程实例，则设置数据集创建人为审批人
-        Task task = taskList.get(0);
-        if (StringUtils.equals(processInstance.getProcessDefinitionKey(), DEFAULT_DS_PROCESS_KEY)) {
-            // 设置下一环节审批人
-            processTaskService.assigneeTask(task.getId(), "userA");
-        } else {
-            if (StringUtils.isNotBlank(datasetBaseInfo.getDataSetCreator())) {
-                processTaskService.assigneeTask(task.getId(), datasetBaseInfo.getDataSetCreator());
-            }
-        }
-        // 会返回任务processInstanceId（act_hi_procinst）和taskId（act_ru_task）
-        return new TaskVo(task);
+        processDataset.setRequestKey(requestKey);
+        return processDataset;
     }
 
     /**
@@ -131,15 +495,131 @@ public class DatasetProcessService {
 
         validateTaskFinished(task);
 
-        // 获取任务指定处理人
-        String assignee = task.getAssignee();
-
         // 判断当前处理人是否和任务指派人一致
-        if (!StringUtils.equals(processApproval.getAssignee(), assignee)) {
-            throw new GlobalException("当前任务审批人应该是: " + assignee);
+        validateAssignee(processApproval, task);
+
+        // 处理任务
+        handleTask(processApproval, task);
+        // 记录当前任务审批相关信息
+        saveTaskApprovalInfo(processApproval, processApproval.getAssignee(), task);
+
+        // 更新流程状态
+        updateProcessStatus(task.getProcessInstanceId());
+        // 设置下一节点审批人
+        List<Task> taskList = processTaskService.getTaskByProInstId(task.getProcessInstanceId());
+        if (null != taskList && taskList.size() > 0) {
+            Task task1 = taskList.get(0);
+            processTaskService.assigneeTask(task1.getId(), processApproval.getNextAssignee());
+            return task1.getId();
+        }
+        return "";
+    }
+
+    /**
+     * 批量审批任务
+     * <p>
+     * 说明：一次查询加载全部任务，校验不通过的直接记为失败；其余按批在独立事务中处理，
+     * 审批记录批量新增、流程状态批量更新。某一批失败时整批回滚，再逐个重试以确定失败的任务
+     *
+     * @param batchApproval
+     * @return
+     */
+    public BatchResultVo batchApprovalTask(BatchProcessApproval batchApproval) {
+        List<ProcessApproval> approvals = batchApproval.getApprovals();
+        if (approvals.size() > batchMaxSize) {
+            throw new GlobalException("一次最多审批" + batchMaxSize + "个任务");
+        }
+        BatchResultVo result = new BatchResultVo();
+        Map<String, Task> taskMap = processTaskService.getTaskByTaskIds(
+                approvals.stream().map(ProcessApproval::getTaskId).collect(Collectors.toList()));
+
+        List<ProcessApproval> validApprovals = new ArrayList<>(approvals.size());
+        Set<String> taskIds = new HashSet<>();
+        for (ProcessApproval processApproval : approvals) {
+            if (!taskIds.add(processApproval.getTaskId())) {
+                result.add(BatchItemVo.failure(processApproval.getTaskId(), "任务重复提交"));
+                continue;
+            }
+            Task task = taskMap.get(processApproval.getTaskId());
+            try {
+                validateTaskFinished(task);
+                validateAssignee(processApproval, task);
+                validApprovals.add(processApproval);
+            } catch (GlobalException e) {
+                result.add(BatchItemVo.failure(processApproval.getTaskId(), e.getMessage()));
+            }
+        }
+
+        for (List<ProcessApproval> chunk : Lists.partition(validApprovals, batchChunkSize)) {
+            try {
+                result.addAll(transactionTemplate.execute(status -> approvalChunk(chunk, taskMap)));
+            } catch (RuntimeException e) {
+                log.warn("batch approval chunk failed, retry one by one, size=[{}]", chunk.size(), e);
+                for (ProcessApproval processApproval : chunk) {
+                    try {
+                        result.addAll(transactionTemplate.execute(status -> approvalChunk(Collections.singletonList(processApproval), taskMap)));
+                    } catch (RuntimeException ex) {
+                        log.warn("batch approval failed, taskId=[{}]", processApproval.getTaskId(), ex);
+                        result.add(BatchItemVo.failure(processApproval.getTaskId(), ex.getMessage()));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在当前事务中审批一批任务
+     *
+     * @param chunk
+     * @param taskMap
+     * @return
+     */
+    private List<BatchItemVo> approvalChunk(List<ProcessApproval> chunk, Map<String, Task> taskMap) {
+        List<ProcessTask> processTasks = new ArrayList<>(chunk.size());
+        Set<String> processInstanceIds = new LinkedHashSet<>();
+        for (ProcessApproval processApproval : chunk) {
+            Task task = taskMap.get(processApproval.getTaskId());
+            handleTask(processApproval, task);
+            processTasks.add(buildTaskApprovalInfo(processApproval, processApproval.getAssignee(), task));
+            processInstanceIds.add(task.getProcessInstanceId());
+        }
+        // 记录审批信息
+        processTaskWriter.saveAll(processTasks);
+
+        // 更新已结束流程的状态
+        Set<String> runningIds = processRuntimeService.getRunningProcessInstanceIds(processInstanceIds);
+        List<String> finishedIds = processInstanceIds.stream().filter(id -> !runningIds.contains(id)).collect(Collectors.toList());
+        if (!finishedIds.isEmpty()) {
+            processDatasetMapper.updateStatusByProcessInstanceIds(finishedIds, ProcessStatusEnum.FINISHED.getCode());
         }
 
-        // 处理任务，并设置审批流程变量，用户网关控制下一任务
+        // 设置下一节点审批人，同一流程实例以最后一个审批的下个节点审批人为准
+        Map<String, Task> nextTaskMap = processTaskService.getLatestTaskByProInstIds(runningIds);
+        Map<String, String> nextAssigneeMap = new HashMap<>();
+        for (ProcessApproval processApproval : chunk) {
+            Task nextTask = nextTaskMap.get(taskMap.get(processApproval.getTaskId()).getProcessInstanceId());
+            if (nextTask != null) {
+                nextAssigneeMap.put(nextTask.getId(), processApproval.getNextAssignee());
+            }
+        }
+        nextAssigneeMap.forEach(processTaskService::assigneeTask);
+
+        List<BatchItemVo> items = new ArrayList<>(chunk.size());
+        for (ProcessApproval processApproval : chunk) {
+            Task nextTask = nextTaskMap.get(taskMap.get(processApproval.getTaskId()).getProcessInstanceId());
+            items.add(BatchItemVo.success(processApproval.getTaskId(), nextTask == null ? "" : nextTask.getId()));
+        }
+        return items;
+    }
+
+    /**
+     * 处理任务，并设置审批流程变量，用户网关控制下一任务
+     *
+     * @param processApproval
+     * @param task
+     */
+    private void handleTask(ProcessApproval processApproval, Task task) {
         int code = processApproval.getApprovalEnum().getCode();
         Map<String, Object> variables = new HashMap<>();
         if (1 == code) { // 同意
@@ -153,19 +633,6 @@ public class DatasetProcessService {
         } else { // 拒绝，结束流程
             processRuntimeService.deleteProcess(task.getProcessInstanceId());
         }
-        // 记录当前任务审批相关信息
-        saveTaskApprovalInfo(processApproval, processApproval.getAssignee(), task);
-
-        // 更新流程状态
-        updateProcessStatus(task.getProcessInstanceId());
-        // 设置下一节点审批人
-        List<Task> taskList = processTaskService.getTaskByProInstId(task.getProcessInstanceId());
-        if (null != taskList && taskList.size() > 0) {
-            Task task1 = taskList.get(0);
-            processTaskService.assigneeTask(task1.getId(), processApproval.getNextAssignee());
-            return task1.getId();
-        }
-        return "";
     }
 
     /**
@@ -176,6 +643,18 @@ public class DatasetProcessService {
      * @param task
      */
     private void saveTaskApprovalInfo(ProcessApproval processApproval, String currentUser, Task task) {
+        processTaskWriter.save(buildTaskApprovalInfo(processApproval, currentUser, task));
+    }
+
+    /**
+     * 构造当前任务审批相关信息
+     *
+     * @param processApproval
+     * @param currentUser
+     * @param task
+     * @return
+     */
+    private ProcessTask buildTaskApprovalInfo(ProcessApproval processApproval, String currentUser, Task task) {
         ProcessTask processTask = new ProcessTask();
         processTask.setTaskId(task.getId());
         processTask.setProcInstId(task.getProcessInstanceId());
@@ -184,7 +663,7 @@ public class DatasetProcessService {
         processTask.setApprovalTime(new Date());
         processTask.setApprovalResult(processApproval.getApprovalEnum().getCode());
         processTask.setApprovalComment(processApproval.getComment());
-        processTaskMapper.insertSelective(processTask);
+        return processTask;
     }
 
     /**
@@ -206,11 +685,12 @@ public class DatasetProcessService {
      * @param processStatus
      */
     private void updateProcessStatus(String processInstanceId, ProcessStatusEnum processStatus) {
-        ProcessDataset processDataset = processDatasetMapper.selectByProcessInstanceId(processInstanceId);
-        ProcessDataset newProcessDataset = new ProcessDataset();
-        newProcessDataset.setId(processDataset.getId());
-        newProcessDataset.setProcessStatus(processStatus.getCode());
-        processDatasetMapper.updateByPrimaryKeySelective(newProcessDataset);
+        processDatasetMapper.updateStatusByProcessInstanceIds(Collections.singletonList(processInstanceId), processStatus.getCode());
+        if (processStatus != ProcessStatusEnum.ONGOING) {
+            // 终止的流程只是挂起，不会触发流程结束事件，在这里清除申请结果
+            List<String> processInstanceIds = Collections.singletonList(processInstanceId);
+            TransactionUtils.afterCommit(() -> applyRequestCache.evict(processInstanceIds));
+        }
     }
 
     /**
@@ -225,13 +705,17 @@ public class DatasetProcessService {
 
     /**
      * 获取候选人任务
+     * <p>
+     * 说明：PageHelper不拦截Activiti的查询，这里用listPage在数据库中分页，只加载当前页
      *
      * @param candidate
      * @return
      */
-    public List<Task> getTasksByCandidate(BasePageQuery pageQuery, String candidate) {
-        PageHelper.startPage(pageQuery.getPageNum(), pageQuery.getPageSize());
-        return processTaskService.getTasksByCandidate(candidate);
+    public PageInfo<TaskVo> getTasksByCandidate(BasePageQuery pageQuery, String candidate) {
+        int pageSize = getPageSize(pageQuery.getPageSize());
+        List<Task> tasks = processTaskService.getTasksByCandidate(candidate, getFirstResult(pageQuery, pageSize), pageSize);
+        long total = pageQuery.isCount() ? processTaskService.countTasksByCandidate(candidate) : -1;
+        return toTaskPage(pageQuery, pageSize, tasks, total);
     }
 
     /**
@@ -240,9 +724,43 @@ public class DatasetProcessService {
      * @param candidateGroup
      * @return
      */
-    public List<Task> getTasksByCandidateGroup(BasePageQuery pageQuery, String candidateGroup) {
-        PageHelper.startPage(pageQuery.getPageNum(), pageQuery.getPageSize());
-        return processTaskService.getTasksByCandidateGroup(candidateGroup);
+    public PageInfo<TaskVo> getTasksByCandidateGroup(BasePageQuery pageQuery, String candidateGroup) {
+        int pageSize = getPageSize(pageQuery.getPageSize());
+        List<Task> tasks = processTaskService.getTasksByCandidateGroup(candidateGroup, getFirstResult(pageQuery, pageSize), pageSize);
+        long total = pageQuery.isCount() ? processTaskService.countTasksByCandidateGroup(candidateGroup) : -1;
+        return toTaskPage(pageQuery, pageSize, tasks, total);
+    }
+
+    /**
+     * 每页条数，未指定时使用默认值，超过上限时按上限查询，避免一次加载全部任务
+     *
+     * @param pageSize
+     * @return
+     */
+    private int getPageSize(int pageSize) {
+        return pageSize > 0 ? Math.min(pageSize, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+    }
+
+    private int getFirstResult(BasePageQuery pageQuery, int pageSize) {
+        return (Math.max(pageQuery.getPageNum(), 1) - 1) * pageSize;
+    }
+
+    /**
+     * 转换为与PageHelper分页相同结构的分页结果
+     *
+     * @param pageQuery
+     * @param pageSize  实际使用的每页条数
+     * @param tasks
+     * @param total     不查询总数时为-1
+     * @return
+     */
+    private PageInfo<TaskVo> toTaskPage(BasePageQuery pageQuery, int pageSize, List<Task> tasks, long total) {
+        Page<TaskVo> page = new Page<>(Math.max(pageQuery.getPageNum(), 1), pageSize, pageQuery.isCount());
+        for (Task task : tasks) {
+            page.add(new TaskVo(task));
+        }
+        page.setTotal(total);
+        return new PageInfo<>(page);
     }
 
     /**
@@ -309,4 +827,17 @@ public class DatasetProcessService {
             throw new GlobalException("该任务已完成或不存在，请刷新页面后重试");
         }
     }
+
+    /**
+     * 验证当前处理人是否和任务指派人一致
+     *
+     * @param processApproval
+     * @param task
+     */
+    private void validateAssignee(ProcessApproval processApproval, Task task) {
+        String assignee = task.getAssignee();
+        if (!StringUtils.equals(processApproval.getAssignee(), assignee)) {
+            throw new GlobalException("当前任务审批人应该是: " + assignee);
+        }
+    }
 }
@@ -0,0 +1,439 @@
+package com.neimeng.workflow.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.neimeng.workflow.dao.ProcessTaskMapper;
+import com.neimeng.workflow.entity.pojo.ProcessTask;
+import com.neimeng.workflow.utils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务审批记录写入
+ * <p>
+ * 说明：process_task只用于展示审批历史，支持两种写入模式：
+ * sync：在审批事务中写入，与审批一起提交或回滚；
+ * async：审批事务提交后放入有界队列，由后台线程批量写入，审批请求不再等待这次写库。
+ * 队列满或写库失败时记录追加到本地溢出文件，数据库恢复后由后台线程分批重放，无法写入的记录移入.failed文件待人工处理。
+ * 异步模式下进程异常退出时，队列中还未写入的记录会丢失
+ * <p>
+ * 批量写入时每batchSize条拼成一条多行INSERT，多条INSERT通过BATCH执行器一次发送给数据库；
+ * SqlSession使用Spring管理的连接，在事务中调用时随当前事务提交或回滚
+ */
+@Slf4j
+@Component
+public class ProcessTaskWriter {
+
+    private static final String WRITE_MODE_ASYNC = "async";
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private ProcessTaskMapper processTaskMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${process.task-record.batch-size:500}")
+    private int batchSize;
+
+    @Value("${process.task-record.write-mode:sync}")
+    private String writeMode;
+
+    @Value("${process.task-record.queue-size:10000}")
+    private int queueSize;
+
+    @Value("${process.task-record.flush-interval-millis:200}")
+    private long flushIntervalMillis;
+
+    @Value("${process.task-record.replay-interval-seconds:30}")
+    private long replayIntervalSeconds;
+
+    @Value("${process.task-record.spill-file:./data/process-task-spill.jsonl}")
+    private String spillFile;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Object spillLock = new Object();
+
+    private BlockingQueue<ProcessTask> queue;
+
+    private Thread flushThread;
+
+    private volatile boolean running;
+
+    private long lastReplayTime;
+
+    @PostConstruct
+    public void init() {
+        if (!isAsync()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueSize);
+        running = true;
+        flushThread = new ThreadFactoryBuilder().setNameFormat("process-task-writer-%d").setDaemon(true).build()
+                .newThread(this::flushLoop);
+        flushThread.start();
+        log.info("process task writer started, mode=[{}], queueSize=[{}], spillFile=[{}]", writeMode, queueSize, spillFile);
+    }
+
+    /**
+     * 保存一条审批记录
+     *
+     * @param record
+     */
+    public void save(ProcessTask record) {
+        if (isAsync()) {
+            TransactionUtils.afterCommit(() -> enqueue(Collections.singletonList(record)));
+        } else {
+            processTaskMapper.insertSelective(record);
+        }
+    }
+
+    /**
+     * 保存多条审批记录
+     *
+     * @param records
+     */
+    public void saveAll(List<ProcessTask> records) {
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        if (isAsync()) {
+            List<ProcessTask> copy = new ArrayList<>(records);
+            TransactionUtils.afterCommit(() -> enqueue(copy));
+        } else {
+            write(records);
+        }
+    }
+
+    /**
+     * 批量写入审批记录，不经过队列
+     *
+     * @param records
+     * @return 写入的行数
+     */
+    public int write(List<ProcessTask> records) {
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        int rows = 0;
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            ProcessTaskMapper mapper = sqlSession.getMapper(ProcessTaskMapper.class);
+            for (List<ProcessTask> part : Lists.partition(records, batchSize)) {
+                mapper.insertBatch(part);
+            }
+            for (BatchResult batchResult : sqlSession.flushStatements()) {
+                for (int count : batchResult.getUpdateCounts()) {
+                    rows += Math.max(count, 0);
+                }
+            }
+            sqlSession.commit();
+        }
+        log.debug("write process task records, size=[{}], rows=[{}]", records.size(), rows);
+        return rows;
+    }
+
+    /**
+     * 队列中等待写入的记录数
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flushThread == null) {
+            return;
+        }
+        running = false;
+        flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        // 没来得及写入的记录放入溢出文件，下次启动后重放
+        List<ProcessTask> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            spill(rest);
+        }
+    }
+
+    private boolean isAsync() {
+        return WRITE_MODE_ASYNC.equalsIgnoreCase(writeMode);
+    }
+
+    private void enqueue(List<ProcessTask> records) {
+        List<ProcessTask> overflow = null;
+        for (ProcessTask record : records) {
+            if (!running || !queue.offer(record)) {
+                if (overflow == null) {
+                    overflow = new ArrayList<>();
+                }
+                overflow.add(record);
+            }
+        }
+        if (overflow != null) {
+            log.warn("process task queue is full, spill records, size=[{}]", overflow.size());
+            spill(overflow);
+        }
+    }
+
+    private void flushLoop() {
+        List<ProcessTask> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ProcessTask first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    flush(batch);
+                    batch.clear();
+                }
+                if (running && System.currentTimeMillis() - lastReplayTime >= TimeUnit.SECONDS.toMillis(replayIntervalSeconds)) {
+                    lastReplayTime = System.currentTimeMillis();
+                    replay();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("process task writer error", e);
+            }
+        }
+        if (!batch.isEmpty()) {
+            spill(batch);
+        }
+    }
+
+    /**
+     * 在一个事务中写入一批记录，失败时整批放入溢出文件，不会出现部分写入后重放导致的重复
+     */
+    private void flush(List<ProcessTask> batch) {
+        try {
+            transactionTemplate.execute(status -> write(batch));
+        } catch (RuntimeException e) {
+            log.warn("write process task records failed, spill records, size=[{}]", batch.size(), e);
+            spill(new ArrayList<>(batch));
+        }
+    }
+
+    /**
+     * 追加到溢出文件，每行一条JSON
+     */
+    private void spill(List<ProcessTask> records) {
+        Path path = Paths.get(spillFile);
+        synchronized (spillLock) {
+            try {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (ProcessTask record : records) {
+                        writer.write(objectMapper.writeValueAsString(record));
+                        writer.newLine();
+                    }
+                }
+            } catch (IOException e) {
+                for (ProcessTask record : records) {
+                    log.error("spill process task record failed, taskId=[{}], procInstId=[{}], approvalUser=[{}], approvalResult=[{}]",
+                            record.getTaskId(), record.getProcInstId(), record.getApprovalUser(), record.getApprovalResult());
+                }
+                log.error("spill process task records failed, file=[{}]", spillFile, e);
+            }
+        }
+    }
+
+    /**
+     * 重放溢出文件
+     * <p>
+     * 先把溢出文件改名，重放期间新的溢出记录写入新文件；按batchSize行一批重放，每批一个事务，
+     * 每批提交后把已处理的行数记入进度文件，下次从进度处继续，重放文件删除失败也不会重复写入。
+     * 无法解析或被数据库拒绝的行（数据错误、违反约束）移入.failed文件，不阻塞后面的记录；
+     * 数据库不可用等其它错误时停止，保留进度下次重试。进度文件写入失败时最多重复写入一批
+     */
+    private void replay() {
+        Path path = Paths.get(spillFile);
+        Path replayPath = Paths.get(spillFile + ".replay");
+        Path offsetPath = Paths.get(spillFile + ".replay.offset");
+        Path failedPath = Paths.get(spillFile + ".failed");
+        try {
+            if (!Files.exists(replayPath)) {
+                synchronized (spillLock) {
+                    if (!Files.exists(path)) {
+                        return;
+                    }
+                    // 重放文件已删除时留下的进度属于上一个重放文件
+                    Files.deleteIfExists(offsetPath);
+                    Files.move(path, replayPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            long offset = readOffset(offsetPath);
+            long lineCount = 0;
+            int failedCount = 0;
+            try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+                List<String> lines = new ArrayList<>(batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (lineCount++ < offset) {
+                        continue;
+                    }
+                    lines.add(line);
+                    if (lines.size() >= batchSize) {
+                        failedCount += replayChunk(lines, lineCount - lines.size(), offsetPath, failedPath);
+                        lines.clear();
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    failedCount += replayChunk(lines, lineCount - lines.size(), offsetPath, failedPath);
+                }
+            }
+            Files.delete(replayPath);
+            Files.deleteIfExists(offsetPath);
+            log.info("replay process task records, lines=[{}], skipped=[{}], failed=[{}]", lineCount, offset, failedCount);
+        } catch (IOException | RuntimeException e) {
+            log.warn("replay process task records failed, file=[{}]", replayPath, e);
+        }
+    }
+
+    /**
+     * 在一个事务中重放一批行，被数据库拒绝时逐行重放以找出被拒绝的行
+     *
+     * @param lines
+     * @param startLine  第一行在重放文件中的行号（从0开始）
+     * @param offsetPath
+     * @param failedPath
+     * @return 移入.failed文件的行数
+     */
+    private int replayChunk(List<String> lines, long startLine, Path offsetPath, Path failedPath) throws IOException {
+        List<ProcessTask> records = new ArrayList<>(lines.size());
+        List<String> failedLines = new ArrayList<>();
+        for (String line : lines) {
+            ProcessTask record = parse(line);
+            if (record != null) {
+                records.add(record);
+            } else if (!line.trim().isEmpty()) {
+                failedLines.add(line);
+            }
+        }
+        try {
+            transactionTemplate.execute(status -> write(records));
+            appendFailed(failedPath, failedLines);
+            writeOffset(offsetPath, startLine + lines.size());
+            return failedLines.size();
+        } catch (RuntimeException e) {
+            if (!isRejected(e)) {
+                throw e;
+            }
+            log.warn("replay process task chunk rejected, retry one by one, startLine=[{}], size=[{}]", startLine, lines.size(), e);
+        }
+        int failedCount = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            ProcessTask record = parse(line);
+            if (record == null && !line.trim().isEmpty()) {
+                appendFailed(failedPath, Collections.singletonList(line));
+                failedCount++;
+            } else if (record != null) {
+                try {
+                    transactionTemplate.execute(status -> write(Collections.singletonList(record)));
+                } catch (RuntimeException e) {
+                    if (!isRejected(e)) {
+                        throw e;
+                    }
+                    log.warn("replay process task record rejected, taskId=[{}], procInstId=[{}]", record.getTaskId(), record.getProcInstId(), e);
+                    appendFailed(failedPath, Collections.singletonList(line));
+                    failedCount++;
+                }
+            }
+            writeOffset(offsetPath, startLine + i + 1);
+        }
+        return failedCount;
+    }
+
+    /**
+     * @return 无法解析时返回null
+     */
+    private ProcessTask parse(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(line, ProcessTask.class);
+        } catch (IOException e) {
+            log.warn("parse process task record failed, line=[{}]", line, e);
+            return null;
+        }
+    }
+
+    /**
+     * 数据库因为数据本身拒绝写入（SQLState 22数据错误、23违反约束），重试也不会成功
+     */
+    private static boolean isRejected(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && (sqlState.startsWith("22") || sqlState.startsWith("23"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long readOffset(Path offsetPath) throws IOException {
+        if (!Files.exists(offsetPath)) {
+            return 0;
+        }
+        String content = new String(Files.readAllBytes(offsetPath), StandardCharsets.UTF_8).trim();
+        return content.isEmpty() ? 0 : Long.parseLong(content);
+    }
+
+    /**
+     * 先写临时文件再原子替换，进度文件不会只写一半
+     */
+    private static void writeOffset(Path offsetPath, long offset) throws IOException {
+        Path tmpPath = Paths.get(offsetPath + ".tmp");
+        Files.write(tmpPath, String.valueOf(offset).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmpPath, offsetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void appendFailed(Path failedPath, List<String> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Files.write(failedPath, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,205 @@
+package com.neimeng.workflow.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 业务表结构版本升级
+ * <p>
+ * 说明：按版本号顺序执行 sql/migration/V{版本号}__{描述}.sql 中还没执行过的脚本，
+ * 执行结果记录在 process_schema_version 表中，已执行的脚本不会再执行，也不要再修改；
+ * MySQL的DDL会隐式提交，脚本执行失败时需要人工处理已执行的部分后再启动
+ */
+@Slf4j
+@Service
+public class SchemaMigrationService {
+
+    private static final String SCRIPT_LOCATION = "classpath*:sql/migration/V*__*.sql";
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("^V(\\d+)__(.+)\\.sql$");
+
+    private static final String VERSION_TABLE = "process_schema_version";
+
+    private static final String LOCK_NAME = "process_schema_migration";
+
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private final DataSource dataSource;
+
+    @Autowired
+    public SchemaMigrationService(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 执行还没执行过的升级脚本
+     *
+     * @return 本次执行的版本号
+     */
+    public List<Integer> migrate() {
+        List<Script> scripts = loadScripts();
+        List<Integer> applied = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean mysql = "MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            // 多个节点同时启动时只有一个执行
+            if (mysql) {
+                lock(connection);
+            }
+            try {
+                createVersionTable(connection);
+                Map<Integer, Long> installed = getInstalledVersions(connection);
+                for (Script script : scripts) {
+                    Long checksum = installed.get(script.version);
+                    if (checksum != null) {
+                        if (checksum != script.checksum) {
+                            log.warn("schema migration script changed after it was applied, script=[{}]", script.name);
+                        }
+                        continue;
+                    }
+                    long start = System.currentTimeMillis();
+                    ScriptUtils.executeSqlScript(connection, new EncodedResource(script.resource, StandardCharsets.UTF_8));
+                    int cost = (int) (System.currentTimeMillis() - start);
+                    saveVersion(connection, script, cost);
+                    applied.add(script.version);
+                    log.info("schema migration applied, script=[{}], cost=[{}ms]", script.name, cost);
+                }
+            } finally {
+                if (mysql) {
+                    unlock(connection);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("业务表结构升级失败", e);
+        }
+        return applied;
+    }
+
+    private List<Script> loadScripts() {
+        List<Script> scripts = new ArrayList<>();
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(SCRIPT_LOCATION)) {
+                Matcher matcher = SCRIPT_NAME.matcher(resource.getFilename());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                CRC32 crc32 = new CRC32();
+                try (InputStream in = resource.getInputStream()) {
+                    crc32.update(StreamUtils.copyToByteArray(in));
+                }
+                scripts.add(new Script(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                        resource.getFilename(), crc32.getValue(), resource));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("读取业务表结构升级脚本失败", e);
+        }
+        scripts.sort(Comparator.comparingInt(script -> script.version));
+        for (int i = 1; i < scripts.size(); i++) {
+            if (scripts.get(i).version == scripts.get(i - 1).version) {
+                throw new IllegalStateException("业务表结构升级脚本版本号重复：" + scripts.get(i).name);
+            }
+        }
+        return scripts;
+    }
+
+    private void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " ("
+                    + "version int NOT NULL, "
+                    + "description varchar(200) NOT NULL, "
+                    + "script varchar(200) NOT NULL, "
+                    + "checksum bigint NOT NULL, "
+                    + "execution_time int NOT NULL, "
+                    + "installed_on datetime DEFAULT CURRENT_TIMESTAMP, "
+                    + "PRIMARY KEY (version))");
+        }
+    }
+
+    private Map<Integer, Long> getInstalledVersions(Connection connection) throws SQLException {
+        Map<Integer, Long> versions = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, checksum FROM " + VERSION_TABLE)) {
+            while (rs.next()) {
+                versions.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return versions;
+    }
+
+    private void saveVersion(Connection connection, Script script, int cost) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + VERSION_TABLE
+                + " (version, description, script, checksum, execution_time) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setInt(1, script.version);
+            ps.setString(2, script.description);
+            ps.setString(3, script.name);
+            ps.setLong(4, script.checksum);
+            ps.setInt(5, cost);
+            ps.executeUpdate();
+        }
+    }
+
+    private void lock(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new IllegalStateException("等待业务表结构升级锁超时");
+                }
+            }
+        }
+    }
+
+    private void unlock(Connection connection) {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            log.warn("release schema migration lock failed", e);
+        }
+    }
+
+    private static final class Script {
+
+        private final int version;
+
+        private final String description;
+
+        private final String name;
+
+        private final long checksum;
+
+        private final Resource resource;
+
+        private Script(int version, String description, String name, long checksum, Resource resource) {
+            this.version = version;
+            this.description = description;
+            this.name = name;
+            this.checksum = checksum;
+            this.resource = resource;
+        }
+    }
+}
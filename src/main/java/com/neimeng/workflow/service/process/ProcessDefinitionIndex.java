@@ -0,0 +1,81 @@
+package com.neimeng.workflow.service.process;
+
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.bpmn.model.FlowNode;
+import org.activiti.bpmn.model.Process;
+import org.activiti.bpmn.model.SequenceFlow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程定义索引，按流程定义ID缓存
+ * <p>
+ * 说明：创建时遍历一次模型，预先算好节点映射和连线邻接表，供驳回目标查找和高亮连线计算使用，
+ * 创建后不再修改；连线列表是创建时的副本，不受之后对模型的修改影响
+ */
+public final class ProcessDefinitionIndex {
+
+    private final String processDefinitionId;
+
+    private final String deploymentId;
+
+    private final BpmnModel bpmnModel;
+
+    private final Map<String, FlowNode> flowNodeMap;
+
+    private final Map<String, List<SequenceFlow>> outgoingFlowMap;
+
+    public ProcessDefinitionIndex(String processDefinitionId, String deploymentId, BpmnModel bpmnModel) {
+        this.processDefinitionId = processDefinitionId;
+        this.deploymentId = deploymentId;
+        this.bpmnModel = bpmnModel;
+
+        Map<String, FlowNode> flowNodes = new HashMap<>();
+        Map<String, List<SequenceFlow>> outgoing = new HashMap<>();
+        for (Process process : bpmnModel.getProcesses()) {
+            // 包含子流程中的节点
+            for (FlowNode flowNode : process.findFlowElementsOfType(FlowNode.class)) {
+                flowNodes.put(flowNode.getId(), flowNode);
+                outgoing.put(flowNode.getId(), Collections.unmodifiableList(new ArrayList<>(flowNode.getOutgoingFlows())));
+            }
+        }
+        this.flowNodeMap = Collections.unmodifiableMap(flowNodes);
+        this.outgoingFlowMap = Collections.unmodifiableMap(outgoing);
+    }
+
+    public String getProcessDefinitionId() {
+        return processDefinitionId;
+    }
+
+    public String getDeploymentId() {
+        return deploymentId;
+    }
+
+    public BpmnModel getBpmnModel() {
+        return bpmnModel;
+    }
+
+    /**
+     * 根据节点id获取节点定义，不存在时返回null
+     *
+     * @param flowNodeId
+     * @return
+     */
+    public FlowNode getFlowNode(String flowNodeId) {
+        return flowNodeMap.get(flowNodeId);
+    }
+
+    /**
+     * 节点的出线
+     *
+     * @param flowNodeId
+     * @return
+     */
+    public List<SequenceFlow> getOutgoingFlows(String flowNodeId) {
+        return outgoingFlowMap.getOrDefault(flowNodeId, Collections.emptyList());
+    }
+}
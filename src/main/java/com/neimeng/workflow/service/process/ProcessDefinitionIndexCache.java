@@ -0,0 +1,77 @@
+package com.neimeng.workflow.service.process;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 流程定义索引缓存
+ * <p>
+ * 说明：只负责存取，不依赖流程引擎，流程引擎的事件监听可以直接注入而不产生循环依赖；
+ * 索引的创建由ProcessRepositoryService.getDefinitionIndex负责
+ */
+@Slf4j
+@Component
+public class ProcessDefinitionIndexCache {
+
+    private final Cache<String, ProcessDefinitionIndex> indexCache;
+
+    public ProcessDefinitionIndexCache(@Value("${process.definition.index.max-size:500}") long maxSize) {
+        this.indexCache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * 获取流程定义索引，不存在时调用loader创建
+     *
+     * @param processDefinitionId
+     * @param loader
+     * @return
+     */
+    public ProcessDefinitionIndex get(String processDefinitionId, Callable<ProcessDefinitionIndex> loader) {
+        try {
+            return indexCache.get(processDefinitionId, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("加载流程定义出错", cause);
+        }
+    }
+
+    /**
+     * 清除流程定义索引
+     *
+     * @param processDefinitionId
+     */
+    public void evict(String processDefinitionId) {
+        indexCache.invalidate(processDefinitionId);
+    }
+
+    /**
+     * 清除部署下所有流程定义的索引
+     *
+     * @param deploymentId
+     * @return 被清除的流程定义ID
+     */
+    public List<String> evictDeployment(String deploymentId) {
+        List<String> processDefinitionIds = new ArrayList<>();
+        indexCache.asMap().values().removeIf(index -> {
+            if (deploymentId.equals(index.getDeploymentId())) {
+                processDefinitionIds.add(index.getProcessDefinitionId());
+                return true;
+            }
+            return false;
+        });
+        log.info("evict process definition index, deploymentId=[{}], processDefinitionIds={}", deploymentId, processDefinitionIds);
+        return processDefinitionIds;
+    }
+}
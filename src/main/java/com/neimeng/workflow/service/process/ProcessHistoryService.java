@@ -1,41 +1,77 @@
 package com.neimeng.workflow.service.process;
 
+import com.google.common.collect.Lists;
+import com.neimeng.workflow.entity.params.DiagramExportParams;
+import com.neimeng.workflow.exception.GlobalException;
+import com.neimeng.workflow.exception.ServiceBusyException;
 import com.neimeng.workflow.utils.CloseableUtils;
+import com.neimeng.workflow.diagram.CustomProcessDiagramCanvas;
 import com.neimeng.workflow.diagram.CustomProcessDiagramGeneratorImpl;
+import com.neimeng.workflow.diagram.DiagramRenderExecutor;
+import com.neimeng.workflow.diagram.ProcessDiagramCache;
+import com.neimeng.workflow.utils.NativeSqlUtils;
 import com.neimeng.workflow.utils.WorkflowConstants;
 import lombok.extern.slf4j.Slf4j;
 import org.activiti.bpmn.model.BpmnModel;
-import org.activiti.bpmn.model.FlowNode;
 import org.activiti.bpmn.model.SequenceFlow;
 import org.activiti.engine.HistoryService;
+import org.activiti.engine.ManagementService;
 import org.activiti.engine.history.HistoricActivityInstance;
 import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.history.HistoricProcessInstanceQuery;
 import org.activiti.engine.history.HistoricTaskInstance;
-import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntity;
+import org.activiti.engine.history.NativeHistoricActivityInstanceQuery;
+import org.activiti.engine.runtime.Execution;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @Service
 @Transactional
 public class ProcessHistoryService {
 
+    private static final String PNG_CONTENT_TYPE = "image/png";
+    private static final String SVG_CONTENT_TYPE = "image/svg+xml";
+    private static final String ZIP_CONTENT_TYPE = "application/zip";
+
     @Autowired
     private HistoryService historyService;
 
+    @Autowired
+    private ManagementService managementService;
+
     @Autowired
     private ProcessRepositoryService processRepositoryService;
 
@@ -46,6 +82,15 @@ public class ProcessHistoryService {
     @Autowired
     private CustomProcessDiagramGeneratorImpl processDiagramGenerator;
 
+    @Autowired
+    private ProcessDiagramCache processDiagramCache;
+
+    @Autowired
+    private DiagramRenderExecutor diagramRenderExecutor;
+
+    @Value("${process.diagram.export.max-instances:1000}")
+    private int exportMaxInstances;
+
     /**
      * 获取历史流程实例
      *
@@ -79,14 +124,95 @@ public class ProcessHistoryService {
                 .orderByHistoricActivityInstanceId().asc().list();
     }
 
+    /**
+     * 批量获取流程历史中已执行节点，按IN条件分批查询
+     *
+     * @param processInstanceIds
+     * @return 流程实例ID -> 已执行节点，与getHistoricActivityInstance的排序相同
+     */
+    public Map<String, List<HistoricActivityInstance>> getHistoricActivityInstances(Collection<String> processInstanceIds) {
+        Map<String, List<HistoricActivityInstance>> activityMap = new HashMap<>();
+        String tableName = managementService.getTableName(HistoricActivityInstance.class);
+        for (List<String> ids : Lists.partition(new ArrayList<>(processInstanceIds), NativeSqlUtils.IN_BATCH_SIZE)) {
+            NativeHistoricActivityInstanceQuery query = historyService.createNativeHistoricActivityInstanceQuery()
+                    .sql("SELECT * FROM " + tableName + " WHERE PROC_INST_ID_ IN " + NativeSqlUtils.inClause(ids.size()) + " ORDER BY ID_ ASC");
+            for (HistoricActivityInstance activityInstance : NativeSqlUtils.parameters(query, ids).list()) {
+                activityMap.computeIfAbsent(activityInstance.getProcessInstanceId(), k -> new ArrayList<>()).add(activityInstance);
+            }
+        }
+        return activityMap;
+    }
+
+    /**
+     * 按导出条件获取历史流程实例
+     *
+     * @param params
+     * @return
+     */
+    private List<HistoricProcessInstance> getHistoricProcessInstances(DiagramExportParams params) {
+        List<String> processInstanceIds = params.getProcessInstanceIds();
+        if (processInstanceIds != null && !processInstanceIds.isEmpty()) {
+            if (processInstanceIds.size() > exportMaxInstances) {
+                throw new GlobalException("一次最多导出" + exportMaxInstances + "个流程图");
+            }
+            List<HistoricProcessInstance> processInstances = new ArrayList<>(processInstanceIds.size());
+            for (List<String> ids : Lists.partition(new ArrayList<>(new LinkedHashSet<>(processInstanceIds)), NativeSqlUtils.IN_BATCH_SIZE)) {
+                processInstances.addAll(historyService.createHistoricProcessInstanceQuery()
+                        .processInstanceIds(new HashSet<>(ids)).list());
+            }
+            return processInstances;
+        }
+        if (StringUtils.isBlank(params.getProcessDefinitionKey()) && params.getStartedAfter() == null && params.getStartedBefore() == null) {
+            throw new GlobalException("流程实例ID列表和筛选条件不能同时为空");
+        }
+        HistoricProcessInstanceQuery query = historyService.createHistoricProcessInstanceQuery();
+        if (StringUtils.isNotBlank(params.getProcessDefinitionKey())) {
+            query.processDefinitionKey(params.getProcessDefinitionKey());
+        }
+        if (params.getStartedAfter() != null) {
+            query.startedAfter(params.getStartedAfter());
+        }
+        if (params.getStartedBefore() != null) {
+            query.startedBefore(params.getStartedBefore());
+        }
+        if (Boolean.TRUE.equals(params.getFinished())) {
+            query.finished();
+        } else if (Boolean.FALSE.equals(params.getFinished())) {
+            query.unfinished();
+        }
+        return query.orderByProcessInstanceStartTime().asc().listPage(0, exportMaxInstances);
+    }
+
+    /**
+     * 确定流程图输出格式：优先使用imageType参数，其次根据请求头Accept判断，默认png
+     *
+     * @param imageType
+     * @param accept
+     * @return
+     */
+    public String resolveImageType(String imageType, String accept) {
+        if (StringUtils.isNotBlank(imageType)) {
+            return CustomProcessDiagramCanvas.isSvg(imageType) ? WorkflowConstants.DIAGRAM_IMAGE_TYPE_SVG : WorkflowConstants.DIAGRAM_IMAGE_TYPE_PNG;
+        }
+        if (StringUtils.contains(accept, SVG_CONTENT_TYPE)) {
+            return WorkflowConstants.DIAGRAM_IMAGE_TYPE_SVG;
+        }
+        return WorkflowConstants.DIAGRAM_IMAGE_TYPE_PNG;
+    }
+
     /**
      * 获取流程图
+     * <p>
+     * 说明：ETag由高亮状态计算，请求头If-None-Match与之相同时直接返回304，不再绘制；
+     * 不开启事务，各查询各自使用连接，等待绘制和输出图片时不占用数据库连接
      *
      * @param processInstanceId
+     * @param imageType         png或svg
+     * @param request
      * @param response
      */
-    public void getProccessImage(String processInstanceId, HttpServletResponse response) {
-        InputStream imageStream = null;
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void getProccessImage(String processInstanceId, String imageType, HttpServletRequest request, HttpServletResponse response) {
         ServletOutputStream outputStream = null;
         try {
             if (StringUtils.isBlank(processInstanceId)) {
@@ -99,99 +225,256 @@ public class ProcessHistoryService {
             String processDefinitionId = processInstance.getProcessDefinitionId();
 
             // 获取流程定义信息
-            BpmnModel bpmnModel = processRepositoryService.getModel(processDefinitionId);
-
-            ProcessDefinitionEntity definitionEntity = processRepositoryService.getProcessDefinitionEntity(processDefinitionId);
+            ProcessDefinitionIndex definitionIndex = processRepositoryService.getDefinitionIndex(processDefinitionId);
 
             // 获取流程历史中已执行节点
             List<HistoricActivityInstance> historicActivityInstance = getHistoricActivityInstance(processInstanceId);
 
-            // 高亮环节id集合
-            List<String> highLightedActivitis = new ArrayList<>();
-            for (HistoricActivityInstance tempActivity : historicActivityInstance) {
-                String activityId = tempActivity.getActivityId();
-                highLightedActivitis.add(activityId);
-            }
-
-            // 高亮线路id集合
-            List<String> highLightedFlows = getHighLightedFlows(bpmnModel, historicActivityInstance);
-
             Set<String> currIds = processRuntimeService.getExecutionByPid(processInstanceId).stream().map(e -> e.getActivityId()).collect(Collectors.toSet());
 
-            imageStream = processDiagramGenerator.generateDiagram(bpmnModel, "png", highLightedActivitis,
-                    highLightedFlows, "宋体", "宋体", "宋体", null, 1.0, new Color[]{WorkflowConstants.COLOR_NORMAL, WorkflowConstants.COLOR_CURRENT}, currIds);
+            // 高亮状态未变化时浏览器使用本地缓存
+            DiagramTask diagramTask = new DiagramTask(processInstanceId, definitionIndex, imageType, historicActivityInstance, currIds);
+            String etag = "\"" + ProcessDiagramCache.buildETag(diagramTask.cacheKey) + "\"";
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+            if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+                return;
+            }
+
+            // 同一流程定义、高亮状态相同时直接使用缓存的图片，绘制在独立的线程池中进行，繁忙时直接拒绝
+            byte[] image = processDiagramCache.get(processInstanceId, diagramTask.cacheKey, () -> diagramRenderExecutor.render(diagramTask));
 
             // 输出流程图
+            response.setContentType(CustomProcessDiagramCanvas.isSvg(imageType) ? SVG_CONTENT_TYPE : PNG_CONTENT_TYPE);
+            response.setContentLength(image.length);
             outputStream = response.getOutputStream();
-            byte[] b = new byte[2048];
-            int len;
-            while ((len = imageStream.read(b, 0, b.length)) != -1) {
-                outputStream.write(b, 0, len);
-            }
+            outputStream.write(image);
         } catch (IOException e) {
             throw new RuntimeException("获取流程图出错", e);
         } finally {
-            CloseableUtils.close(outputStream, imageStream);
+            CloseableUtils.close(outputStream);
         }
     }
 
-    public List<String> getHighLightedFlows(BpmnModel bpmnModel, List<HistoricActivityInstance> historicActivityInstances) {
-        // 24小时制
-        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        // 用以保存高亮的线flowId
-        List<String> highFlows = new ArrayList<String>();
-
-        for (int i = 0; i < historicActivityInstances.size() - 1; i++) {
-            // 对历史流程节点进行遍历
-            // 得到节点定义的详细信息
-            FlowNode activityImpl = (FlowNode) bpmnModel.getMainProcess().getFlowElement(historicActivityInstances.get(i).getActivityId());
-            // 用以保存后续开始时间相同的节点
-            List<FlowNode> sameStartTimeNodes = new ArrayList<FlowNode>();
-            FlowNode sameActivityImpl1 = null;
-            // 第一个节点
-            HistoricActivityInstance activityImpl_ = historicActivityInstances.get(i);
-            HistoricActivityInstance activityImp2_;
-
-            for (int k = i + 1; k <= historicActivityInstances.size() - 1; k++) {
-                // 后续第1个节点
-                activityImp2_ = historicActivityInstances.get(k);
-
-                // 都是usertask，且主节点与后续节点的开始时间相同，说明不是真实的后继节点
-                if (activityImpl_.getActivityType().equals("userTask") && activityImp2_.getActivityType().equals("userTask") &&
-                        df.format(activityImpl_.getStartTime()).equals(df.format(activityImp2_.getStartTime()))) {
-
-                } else {
-                    // 找到紧跟在后面的一个节点
-                    sameActivityImpl1 = (FlowNode) bpmnModel.getMainProcess().getFlowElement(historicActivityInstances.get(k).getActivityId());
-                    break;
+    /**
+     * 批量导出流程图，打包为zip边绘制边输出
+     * <p>
+     * 说明：流程实例、已执行节点、执行实例均按IN条件批量查询，流程定义使用缓存的索引，全部数据在输出前加载完，
+     * 输出时不占用数据库连接；缓存中没有的流程图提交到绘制线程池，最多同时提交并行数两倍的绘制任务，
+     * 线程池繁忙时先等待已提交的绘制完成再重试，仍然繁忙时记为失败，不在当前线程绘制。
+     * 绘制线程只绘制不读写缓存，不会等待其它请求正在生成的同一张图；失败的流程实例记录在failed.txt中
+     *
+     * @param params
+     * @param response
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportProcessImages(DiagramExportParams params, HttpServletResponse response) {
+        String imageType = resolveImageType(params.getImageType(), null);
+        List<HistoricProcessInstance> processInstances = getHistoricProcessInstances(params);
+        Set<String> processInstanceIds = processInstances.stream().map(HistoricProcessInstance::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<String, List<HistoricActivityInstance>> activityMap = getHistoricActivityInstances(processInstanceIds);
+        Map<String, Set<String>> currIdMap = new HashMap<>();
+        for (Execution execution : processRuntimeService.getExecutionByPids(processInstanceIds)) {
+            currIdMap.computeIfAbsent(execution.getProcessInstanceId(), k -> new HashSet<>()).add(execution.getActivityId());
+        }
+
+        List<String> failed = new ArrayList<>();
+        if (params.getProcessInstanceIds() != null) {
+            for (String processInstanceId : new LinkedHashSet<>(params.getProcessInstanceIds())) {
+                if (!processInstanceIds.contains(processInstanceId)) {
+                    failed.add(processInstanceId + " 流程实例不存在");
                 }
             }
-            // 将后面第一个节点放在时间相同节点的集合里
-            sameStartTimeNodes.add(sameActivityImpl1);
-            for (int j = i + 1; j < historicActivityInstances.size() - 1; j++) {
-                // 后续第一个节点
-                HistoricActivityInstance activityImpl1 = historicActivityInstances.get(j);
-                // 后续第二个节点
-                HistoricActivityInstance activityImpl2 = historicActivityInstances.get(j + 1);
-
-                // 如果第一个节点和第二个节点开始时间相同保存
-                if (df.format(activityImpl1.getStartTime()).equals(df.format(activityImpl2.getStartTime()))) {
-                    FlowNode sameActivityImpl2 = (FlowNode) bpmnModel.getMainProcess().getFlowElement(activityImpl2.getActivityId());
-                    sameStartTimeNodes.add(sameActivityImpl2);
-                } else {
-                    // 有不相同跳出循环
-                    break;
+        }
+
+        List<DiagramTask> diagramTasks = new ArrayList<>(processInstances.size());
+        for (HistoricProcessInstance processInstance : processInstances) {
+            ProcessDefinitionIndex definitionIndex = processRepositoryService.getDefinitionIndex(processInstance.getProcessDefinitionId());
+            diagramTasks.add(new DiagramTask(processInstance.getId(), definitionIndex, imageType,
+                    activityMap.getOrDefault(processInstance.getId(), Collections.emptyList()),
+                    currIdMap.getOrDefault(processInstance.getId(), Collections.emptySet())));
+        }
+
+        response.setContentType(ZIP_CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=process-images.zip");
+        int windowSize = diagramRenderExecutor.getParallelism() * 2;
+        Deque<DiagramTask> window = new ArrayDeque<>(windowSize);
+        ZipOutputStream zipOutputStream = null;
+        try {
+            zipOutputStream = new ZipOutputStream(response.getOutputStream());
+            for (DiagramTask diagramTask : diagramTasks) {
+                byte[] cached = processDiagramCache.getIfPresent(diagramTask.processInstanceId, diagramTask.cacheKey);
+                if (cached != null) {
+                    diagramTask.future = CompletableFuture.completedFuture(cached);
+                } else if (!submitForExport(diagramTask, window, zipOutputStream, failed)) {
+                    failed.add(diagramTask.processInstanceId + " 流程图绘制繁忙");
+                    continue;
+                }
+                window.addLast(diagramTask);
+                if (window.size() >= windowSize) {
+                    writeZipEntry(zipOutputStream, window.pollFirst(), failed);
                 }
             }
-            // 取出节点的所有出去的线
-            List<SequenceFlow> pvmTransitions = activityImpl.getOutgoingFlows();
-
-            // 对所有的线进行遍历
-            for (SequenceFlow pvmTransition : pvmTransitions) {
-                // 如果取出的线的目标节点存在时间相同的节点里，保存该线的id，进行高亮显示
-                FlowNode pvmActivityImpl = (FlowNode) bpmnModel.getMainProcess().getFlowElement(pvmTransition.getTargetRef());
-                if (sameStartTimeNodes.contains(pvmActivityImpl)) {
-                    highFlows.add(pvmTransition.getId());
+            while (!window.isEmpty()) {
+                writeZipEntry(zipOutputStream, window.pollFirst(), failed);
+            }
+            if (!failed.isEmpty()) {
+                zipOutputStream.putNextEntry(new ZipEntry("failed.txt"));
+                zipOutputStream.write(String.join("\n", failed).getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+            zipOutputStream.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("导出流程图出错", e);
+        } finally {
+            for (DiagramTask diagramTask : window) {
+                diagramTask.future.cancel(true);
+            }
+            CloseableUtils.close(zipOutputStream);
+        }
+    }
+
+    /**
+     * 提交到绘制线程池，繁忙时依次输出已提交的绘制结果后重试，等待时间受绘制超时限制
+     *
+     * @return 没有已提交的绘制可以等待、线程池仍然繁忙时返回false
+     */
+    private boolean submitForExport(DiagramTask diagramTask, Deque<DiagramTask> window, ZipOutputStream zipOutputStream,
+                                    List<String> failed) throws IOException {
+        while (true) {
+            try {
+                diagramTask.future = diagramRenderExecutor.submit(diagramTask);
+                return true;
+            } catch (ServiceBusyException e) {
+                if (window.isEmpty()) {
+                    return false;
+                }
+                writeZipEntry(zipOutputStream, window.pollFirst(), failed);
+            }
+        }
+    }
+
+    private void writeZipEntry(ZipOutputStream zipOutputStream, DiagramTask diagramTask, List<String> failed) throws IOException {
+        byte[] image;
+        try {
+            image = diagramRenderExecutor.await(diagramTask.future);
+        } catch (RuntimeException e) {
+            log.error("导出流程图出错，processInstanceId=[{}]", diagramTask.processInstanceId, e);
+            failed.add(diagramTask.processInstanceId + " " + e.getMessage());
+            return;
+        }
+        processDiagramCache.put(diagramTask.processInstanceId, diagramTask.cacheKey, image);
+        zipOutputStream.putNextEntry(new ZipEntry(diagramTask.processInstanceId + "." + diagramTask.imageType));
+        zipOutputStream.write(image);
+        zipOutputStream.closeEntry();
+    }
+
+    /**
+     * 单个流程实例的绘制任务，创建时计算高亮节点和缓存key
+     */
+    private class DiagramTask implements Callable<byte[]> {
+
+        private final String processInstanceId;
+        private final String processDefinitionId;
+        private final BpmnModel bpmnModel;
+        private final String imageType;
+        private final List<String> highLightedActivitis;
+        private final List<String> highLightedFlows;
+        private final Set<String> currIds;
+        private final String cacheKey;
+        private Future<byte[]> future;
+
+        DiagramTask(String processInstanceId, ProcessDefinitionIndex definitionIndex, String imageType,
+                    List<HistoricActivityInstance> historicActivityInstance, Set<String> currIds) {
+            this.processInstanceId = processInstanceId;
+            this.processDefinitionId = definitionIndex.getProcessDefinitionId();
+            this.bpmnModel = definitionIndex.getBpmnModel();
+            this.imageType = imageType;
+            this.currIds = currIds;
+            // 高亮环节id集合
+            this.highLightedActivitis = new ArrayList<>();
+            for (HistoricActivityInstance tempActivity : historicActivityInstance) {
+                highLightedActivitis.add(tempActivity.getActivityId());
+            }
+            // 高亮线路id集合
+            this.highLightedFlows = getHighLightedFlows(definitionIndex, historicActivityInstance);
+            this.cacheKey = ProcessDiagramCache.buildKey(processDefinitionId, imageType, highLightedActivitis, highLightedFlows, currIds);
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            ByteArrayOutputStream bs = new ByteArrayOutputStream();
+            processDiagramGenerator.generateDiagram(processDefinitionId, bpmnModel, imageType, highLightedActivitis,
+                    highLightedFlows, "宋体", "宋体", "宋体", null, 1.0, new Color[]{WorkflowConstants.COLOR_NORMAL, WorkflowConstants.COLOR_CURRENT}, currIds, bs);
+            return bs.toByteArray();
+        }
+    }
+
+    /**
+     * 获取需要高亮的连线
+     * <p>
+     * 说明：开始时间按秒比较（与原先格式化到秒的比较一致），先一次遍历算出每个位置所在的同秒区间，
+     * 之后每个节点的后继判断都是O(1)，整体复杂度与历史节点数成线性关系
+     *
+     * @param definitionIndex
+     * @param historicActivityInstances 按执行顺序排列的历史节点
+     * @return
+     */
+    public List<String> getHighLightedFlows(ProcessDefinitionIndex definitionIndex, List<HistoricActivityInstance> historicActivityInstances) {
+        // 用以保存高亮的线flowId
+        List<String> highFlows = new ArrayList<>();
+        int size = historicActivityInstances.size();
+        if (size < 2) {
+            return highFlows;
+        }
+
+        String[] activityIds = new String[size];
+        boolean[] userTasks = new boolean[size];
+        long[] startSeconds = new long[size];
+        for (int i = 0; i < size; i++) {
+            HistoricActivityInstance activityInstance = historicActivityInstances.get(i);
+            activityIds[i] = activityInstance.getActivityId();
+            userTasks[i] = "userTask".equals(activityInstance.getActivityType());
+            startSeconds[i] = Math.floorDiv(activityInstance.getStartTime().getTime(), 1000L);
+        }
+
+        // 从后往前遍历：
+        // userTaskRunEnd[k]：从k开始连续的、与k同一秒开始的userTask的最后位置
+        // sameSecondLast：与k同一秒开始的连续区间内，每个节点id最后出现的位置
+        int[] userTaskRunEnd = new int[size];
+        List<Map<String, Integer>> sameSecondLast = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sameSecondLast.add(null);
+        }
+        for (int k = size - 1; k >= 0; k--) {
+            boolean sameSecondWithNext = k + 1 < size && startSeconds[k + 1] == startSeconds[k];
+            if (!userTasks[k]) {
+                userTaskRunEnd[k] = k - 1;
+            } else if (sameSecondWithNext && userTasks[k + 1]) {
+                userTaskRunEnd[k] = userTaskRunEnd[k + 1];
+            } else {
+                userTaskRunEnd[k] = k;
+            }
+            Map<String, Integer> lastIndex = sameSecondWithNext ? sameSecondLast.get(k + 1) : new HashMap<>();
+            lastIndex.putIfAbsent(activityIds[k], k);
+            sameSecondLast.set(k, lastIndex);
+        }
+
+        for (int i = 0; i < size - 1; i++) {
+            // 都是usertask，且与后续节点的开始时间相同，说明不是真实的后继节点，跳过这些节点找到紧跟在后面的一个节点
+            int next = i + 1;
+            if (userTasks[i] && userTasks[next] && startSeconds[next] == startSeconds[i]) {
+                next = userTaskRunEnd[next] + 1;
+            }
+            String nextActivityId = next < size ? activityIds[next] : null;
+            // 与后续第一个节点开始时间相同的节点也是后继节点
+            Map<String, Integer> sameStartTimeNodes = sameSecondLast.get(i + 1);
+
+            for (SequenceFlow sequenceFlow : definitionIndex.getOutgoingFlows(activityIds[i])) {
+                String targetRef = sequenceFlow.getTargetRef();
+                Integer lastIndex = sameStartTimeNodes.get(targetRef);
+                if (targetRef.equals(nextActivityId) || (lastIndex != null && lastIndex >= i + 2)) {
+                    highFlows.add(sequenceFlow.getId());
                 }
             }
         }
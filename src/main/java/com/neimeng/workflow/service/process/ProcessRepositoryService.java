@@ -1,11 +1,18 @@
 package com.neimeng.workflow.service.process;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 import lombok.extern.slf4j.Slf4j;
 import org.activiti.bpmn.model.BpmnModel;
 import org.activiti.engine.RepositoryService;
+import org.activiti.engine.TaskService;
 import org.activiti.engine.impl.RepositoryServiceImpl;
 import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntity;
 import org.activiti.engine.repository.Deployment;
@@ -28,7 +35,10 @@ public class ProcessRepositoryService {
     private RepositoryService repositoryService;
 
     @Autowired
-    private ProcessTaskService processTaskService;
+    private TaskService taskService;
+
+    @Autowired
+    private ProcessDefinitionIndexCache processDefinitionIndexCache;
 
     /**
      * 获取所有部署流程信息
@@ -46,7 +56,8 @@ public class ProcessRepositoryService {
      * @return
      */
     public ProcessDefinition findProcessDefinitionByTaskId(String taskId) {
-        Task task = processTaskService.getTaskByTaskId(taskId);
+        // 直接查询任务，ProcessTaskService依赖本类获取流程定义索引，避免循环依赖
+        Task task = taskService.createTaskQuery().taskId(taskId).singleResult();
         ProcessDefinition processDefinition = repositoryService.createProcessDefinitionQuery().processDefinitionId(task.getProcessDefinitionId()).singleResult();
         return processDefinition;
     }
@@ -86,6 +97,21 @@ public class ProcessRepositoryService {
         return processDefinition;
     }
 
+    /**
+     * 根据流程定义id批量获取流程定义
+     *
+     * @param processDefinitionIds
+     * @return 流程定义id -> 流程定义，不存在的id不在结果中
+     */
+    public Map<String, ProcessDefinition> getProcessDefinitionsByIds(Collection<String> processDefinitionIds) {
+        if (processDefinitionIds == null || processDefinitionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return repositoryService.createProcessDefinitionQuery()
+                .processDefinitionIds(new HashSet<>(processDefinitionIds)).list().stream()
+                .collect(Collectors.toMap(ProcessDefinition::getId, Function.identity()));
+    }
+
     /**
      * 根据流程定义id获取流程定义实体
      *
@@ -175,4 +201,17 @@ public class ProcessRepositoryService {
     public BpmnModel getModel(String processDefinitionId) {
         return repositoryService.getBpmnModel(processDefinitionId);
     }
-}
\ No newline at end of file
+
+    /**
+     * 获取流程定义索引，同一流程定义只遍历一次模型
+     *
+     * @param processDefinitionId
+     * @return
+     */
+    public ProcessDefinitionIndex getDefinitionIndex(String processDefinitionId) {
+        return processDefinitionIndexCache.get(processDefinitionId, () -> {
+            ProcessDefinition processDefinition = repositoryService.getProcessDefinition(processDefinitionId);
+            return new ProcessDefinitionIndex(processDefinitionId, processDefinition.getDeploymentId(), getModel(processDefinitionId));
+        });
+    }
+}
@@ -1,11 +1,22 @@
 package com.neimeng.workflow.service.process;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.neimeng.workflow.command.StartProcessAndAssignCmd;
+import com.neimeng.workflow.utils.NativeSqlUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ManagementService;
 import org.activiti.engine.RuntimeService;
 import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
 import org.activiti.engine.runtime.Execution;
+import org.activiti.engine.runtime.NativeExecutionQuery;
 import org.activiti.engine.runtime.ProcessInstance;
 import org.activiti.engine.task.Task;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +34,9 @@ public class ProcessRuntimeService {
     @Autowired
     private RuntimeService runtimeService;
 
+    @Autowired
+    private ManagementService managementService;
+
     @Autowired
     private ProcessTaskService processTaskService;
 
@@ -57,6 +71,19 @@ public class ProcessRuntimeService {
         return runtimeService.startProcessInstanceById(processDefinitionId, variables);
     }
 
+    /**
+     * 通过流程定义id启动流程，并设置第一个任务的审批人，一次写库
+     *
+     * @param processDefinitionId
+     * @param variables           可以为空
+     * @param dataSetCreator      非默认流程的审批人
+     * @return
+     */
+    public StartProcessAndAssignCmd.Result startProcessAndAssign(String processDefinitionId, Map<String, Object> variables,
+                                                                 String dataSetCreator) {
+        return managementService.executeCommand(new StartProcessAndAssignCmd(processDefinitionId, variables, dataSetCreator));
+    }
+
     /**
      * 通过流程实例id获取流程实例
      *
@@ -132,6 +159,23 @@ public class ProcessRuntimeService {
         return runtimeService.createExecutionQuery().processInstanceId(processInstanceId).list();
     }
 
+    /**
+     * 批量获取多个流程实例的执行实例，按IN条件分批查询
+     *
+     * @param processInstanceIds
+     * @return
+     */
+    public List<Execution> getExecutionByPids(Collection<String> processInstanceIds) {
+        List<Execution> executions = new ArrayList<>();
+        String tableName = managementService.getTableName(Execution.class);
+        for (List<String> ids : Lists.partition(new ArrayList<>(processInstanceIds), NativeSqlUtils.IN_BATCH_SIZE)) {
+            NativeExecutionQuery query = runtimeService.createNativeExecutionQuery()
+                    .sql("SELECT * FROM " + tableName + " WHERE PROC_INST_ID_ IN " + NativeSqlUtils.inClause(ids.size()));
+            executions.addAll(NativeSqlUtils.parameters(query, ids).list());
+        }
+        return executions;
+    }
+
     /**
      * 根据流程定义的Key获取所有正在运行的执行实例
      *
@@ -161,6 +205,22 @@ public class ProcessRuntimeService {
         return false;
     }
 
+    /**
+     * 批量判断流程是否结束
+     *
+     * @param processInstanceIds
+     * @return 还没结束的流程实例id
+     */
+    public Set<String> getRunningProcessInstanceIds(Collection<String> processInstanceIds) {
+        Set<String> runningIds = new HashSet<>();
+        for (List<String> ids : Lists.partition(new ArrayList<>(new LinkedHashSet<>(processInstanceIds)), NativeSqlUtils.IN_BATCH_SIZE)) {
+            for (ProcessInstance processInstance : runtimeService.createProcessInstanceQuery().processInstanceIds(new HashSet<>(ids)).list()) {
+                runningIds.add(processInstance.getId());
+            }
+        }
+        return runningIds;
+    }
+
     /**
      * 挂起流程
      *
@@ -2,26 +2,28 @@ package com.neimeng.workflow.service.process;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
-import com.google.common.collect.Maps;
-import com.neimeng.workflow.command.DeleteTaskCmd;
-import com.neimeng.workflow.command.SetFLowNodeAndGoCmd;
+import com.google.common.collect.Lists;
+import com.neimeng.workflow.command.JumpTaskCmd;
+import com.neimeng.workflow.utils.NativeSqlUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.activiti.bpmn.model.BpmnModel;
 import org.activiti.bpmn.model.FlowNode;
-import org.activiti.bpmn.model.SequenceFlow;
 import org.activiti.engine.ActivitiException;
 import org.activiti.engine.HistoryService;
+import org.activiti.engine.IdentityService;
 import org.activiti.engine.ManagementService;
-import org.activiti.engine.RepositoryService;
 import org.activiti.engine.RuntimeService;
 import org.activiti.engine.TaskService;
 import org.activiti.engine.history.HistoricActivityInstance;
-import org.activiti.engine.runtime.Execution;
+import org.activiti.engine.identity.Group;
 import org.activiti.engine.task.Attachment;
 import org.activiti.engine.task.Comment;
+import org.activiti.engine.task.NativeTaskQuery;
 import org.activiti.engine.task.Task;
 import org.apache.avalon.framework.service.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,11 +38,13 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class ProcessTaskService {
 
-    @Autowired
-    private TaskService taskService;
+    /**
+     * 分页查询每页最多返回的条数
+     */
+    public static final int MAX_PAGE_SIZE = 500;
 
     @Autowired
-    private RepositoryService repositoryService;
+    private TaskService taskService;
 
     @Autowired
     private HistoryService historyService;
@@ -51,6 +55,15 @@ public class ProcessTaskService {
     @Autowired
     private RuntimeService runtimeService;
 
+    @Autowired
+    private ProcessRepositoryService processRepositoryService;
+
+    @Autowired
+    private IdentityService identityService;
+
+    @Autowired
+    private TaskCounterCache taskCounterCache;
+
     /**
      * 完成任务，不设置流程变量
      *
@@ -121,13 +134,78 @@ public class ProcessTaskService {
     }
 
     /**
-     * 获取候选人任务
+     * 根据任务id批量获取任务实例，不存在的任务不在结果中
+     *
+     * @param taskIds
+     * @return taskId -> 任务
+     */
+    public Map<String, Task> getTaskByTaskIds(Collection<String> taskIds) {
+        Map<String, Task> taskMap = new HashMap<>();
+        String tableName = managementService.getTableName(Task.class);
+        for (List<String> ids : Lists.partition(new ArrayList<>(new LinkedHashSet<>(taskIds)), NativeSqlUtils.IN_BATCH_SIZE)) {
+            NativeTaskQuery query = taskService.createNativeTaskQuery()
+                    .sql("SELECT * FROM " + tableName + " WHERE ID_ IN " + NativeSqlUtils.inClause(ids.size()));
+            for (Task task : NativeSqlUtils.parameters(query, ids).list()) {
+                taskMap.put(task.getId(), task);
+            }
+        }
+        return taskMap;
+    }
+
+    /**
+     * 批量获取流程实例最新创建的任务，与getTaskByProInstId(processInstanceId).get(0)一致
+     *
+     * @param processInstanceIds
+     * @return processInstanceId -> 任务，没有任务的流程实例不在结果中
+     */
+    public Map<String, Task> getLatestTaskByProInstIds(Collection<String> processInstanceIds) {
+        Map<String, Task> taskMap = new HashMap<>();
+        String tableName = managementService.getTableName(Task.class);
+        for (List<String> ids : Lists.partition(new ArrayList<>(new LinkedHashSet<>(processInstanceIds)), NativeSqlUtils.IN_BATCH_SIZE)) {
+            NativeTaskQuery query = taskService.createNativeTaskQuery()
+                    .sql("SELECT * FROM " + tableName + " WHERE PROC_INST_ID_ IN " + NativeSqlUtils.inClause(ids.size()) + " ORDER BY CREATE_TIME_ DESC");
+            for (Task task : NativeSqlUtils.parameters(query, ids).list()) {
+                taskMap.putIfAbsent(task.getProcessInstanceId(), task);
+            }
+        }
+        return taskMap;
+    }
+
+    /**
+     * 分页获取候选人任务，分页在数据库中完成
      *
      * @param candidate
+     * @param firstResult 第一条的下标，从0开始
+     * @param maxResults  最多返回的条数，超过MAX_PAGE_SIZE时按MAX_PAGE_SIZE查询
      * @return
      */
-    public List<Task> getTasksByCandidate(String candidate) {
-        return taskService.createTaskQuery().taskCandidateUser(candidate).orderByTaskCreateTime().desc().list();
+    public List<Task> getTasksByCandidate(String candidate, int firstResult, int maxResults) {
+        return taskService.createTaskQuery().taskCandidateUser(candidate).orderByTaskCreateTime().desc()
+                .listPage(firstResult, Math.min(maxResults, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * 获取候选人任务数量
+     *
+     * @param candidate
+     * @return
+     */
+    public long countTasksByCandidate(String candidate) {
+        return taskService.createTaskQuery().taskCandidateUser(candidate).count();
+    }
+
+    /**
+     * 获取用户所属的组，与Activiti按候选人查询任务时使用的组一致
+     *
+     * @param userName
+     * @return
+     */
+    public List<String> getCandidateGroups(String userName) {
+        List<String> groupIds = new ArrayList<>();
+        for (Group group : identityService.createGroupQuery().groupMember(userName).list()) {
+            groupIds.add(group.getId());
+        }
+        return groupIds;
     }
 
     /**
@@ -142,25 +220,54 @@ public class ProcessTaskService {
     }
 
     /**
-     * 获取候选组任务
+     * 分页获取候选组任务，分页在数据库中完成
+     *
+     * @param candidateGroup
+     * @param firstResult    第一条的下标，从0开始
+     * @param maxResults     最多返回的条数，超过MAX_PAGE_SIZE时按MAX_PAGE_SIZE查询
+     * @return
+     */
+    public List<Task> getTasksByCandidateGroup(String candidateGroup, int firstResult, int maxResults) {
+        return taskService.createTaskQuery().taskCandidateGroup(candidateGroup).orderByTaskCreateTime().desc()
+                .listPage(firstResult, Math.min(maxResults, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * 获取候选组任务数量
      *
      * @param candidateGroup
      * @return
      */
-    public List<Task> getTasksByCandidateGroup(String candidateGroup) {
-        return taskService.createTaskQuery().taskCandidateGroup(candidateGroup).orderByTaskCreateTime().desc().list();
+    public long countTasksByCandidateGroup(String candidateGroup) {
+        return taskService.createTaskQuery().taskCandidateGroup(candidateGroup).count();
     }
 
     /**
-     * 获取任务数量
+     * 获取任务数量，缓存可用时不查询数据库
      *
      * @param taskAssignee
      * @return
      */
     public long getTaskCount(String taskAssignee) {
+        if (taskCounterCache.isReady()) {
+            return taskCounterCache.getAssigneeCount(taskAssignee);
+        }
         return taskService.createTaskQuery().taskAssignee(taskAssignee).count();
     }
 
+    /**
+     * 获取候选组中还没有办理人的任务数量，缓存可用时不查询数据库
+     *
+     * @param candidateGroup
+     * @return
+     */
+    public long getTaskCountByCandidateGroup(String candidateGroup) {
+        if (taskCounterCache.isReady()) {
+            return taskCounterCache.getGroupCount(candidateGroup);
+        }
+        return countTasksByCandidateGroup(candidateGroup);
+    }
+
     /**
      * 设置变量
      *
@@ -299,15 +406,13 @@ public class ProcessTaskService {
         }
         //获取流程定义id
         String processDefinitionId = currentTask.getProcessDefinitionId();
-        //获取bpmn模板
-        BpmnModel bpmnModel = repositoryService.getBpmnModel(processDefinitionId);
+        //获取流程定义索引
+        ProcessDefinitionIndex definitionIndex = processRepositoryService.getDefinitionIndex(processDefinitionId);
         //获取目标节点定义
         HistoricActivityInstance revokeActInstance = getHistoricActivityInstance(currentTask.getExecutionId(), revokeTaskId);
-        FlowNode targetNode = (FlowNode) bpmnModel.getMainProcess().getFlowElement(revokeActInstance.getActivityId());
-        //删除当前运行任务
-        String executionEntityId = managementService.executeCommand(new DeleteTaskCmd(currentTask.getId()));
-        //流程执行到目标节点
-        managementService.executeCommand(new SetFLowNodeAndGoCmd(targetNode, executionEntityId));
+        FlowNode targetNode = definitionIndex.getFlowNode(revokeActInstance.getActivityId());
+        //删除当前运行任务，流程执行到目标节点
+        managementService.executeCommand(new JumpTaskCmd(currentTask.getId(), targetNode, false));
     }
 
     /**
@@ -323,49 +428,39 @@ public class ProcessTaskService {
             throw new ActivitiException("当前任务不存在或已被办理完成，回退失败！");
         }
         final String processDefinitionId = currentTask.getProcessDefinitionId();
-        final BpmnModel bpmnModel = repositoryService.getBpmnModel(processDefinitionId);
+        final ProcessDefinitionIndex definitionIndex = processRepositoryService.getDefinitionIndex(processDefinitionId);
         final HistoricActivityInstance revokeActInstance = getHistoricActivityInstance(currentTask.getExecutionId(), revokeTaskId);
         final String revokeElementId = revokeActInstance.getActivityId();
 
-        final FlowNode revokeFlowNode = (FlowNode) bpmnModel.getMainProcess().getFlowElement(revokeElementId);
-        final Execution execution = runtimeService.createExecutionQuery().executionId(currentTask.getExecutionId()).singleResult();
-        final FlowNode currentFlowNode = (FlowNode) bpmnModel.getMainProcess().getFlowElement(execution.getActivityId());
-        //记录原活动方向
-        List<SequenceFlow> oriSequenceFlows = new ArrayList<>(currentFlowNode.getOutgoingFlows());
-        //清理活动方向
-        currentFlowNode.getOutgoingFlows().clear();
-        //建立新方向（当前节点指向回退节点）
-        List<SequenceFlow> newSequenceFlowList = new ArrayList<>();
-        SequenceFlow newSequenceFlow = new SequenceFlow();
-        newSequenceFlow.setId("newSequenceFlowId");
-        newSequenceFlow.setSourceFlowElement(currentFlowNode);
-        newSequenceFlow.setTargetFlowElement(revokeFlowNode);
-        newSequenceFlowList.add(newSequenceFlow);
-        currentFlowNode.setOutgoingFlows(newSequenceFlowList);
+        final FlowNode revokeFlowNode = definitionIndex.getFlowNode(revokeElementId);
         //向任务/流程实例添加注释
         taskService.addComment(currentTaskId, currentTask.getProcessInstanceId(), remark);
         taskService.addComment(currentTaskId, currentTask.getProcessInstanceId(), revokeElementId);
-        //完成任务
-        Map<String, Object> currentVariables = Maps.newHashMap();
-        taskService.complete(currentTaskId, currentVariables);
-        //恢复原方向
-        currentFlowNode.setOutgoingFlows(oriSequenceFlows);
+        //完成当前任务并跳转到回退节点，不修改共享的流程定义模型
+        managementService.executeCommand(new JumpTaskCmd(currentTaskId, revokeFlowNode, true));
         //清除已走过的任务节点信息
         historyService.deleteHistoricTaskInstance(revokeTaskId);
     }
 
-    private HistoricActivityInstance getHistoricActivityInstance(String executionId, String revokeTaskId) {
-        List<HistoricActivityInstance> hisList = historyService.createHistoricActivityInstanceQuery().executionId(executionId).finished().list();
-        HistoricActivityInstance revokeActInstance = null;
-        for (HistoricActivityInstance historicActivityInstance : hisList) {
-            if (revokeTaskId.equals(historicActivityInstance.getTaskId())) {
-                revokeActInstance = historicActivityInstance;
-                break;
-            }
-        }
-        if (revokeActInstance == null) {
+    /**
+     * 获取任务对应的已完成历史节点
+     * <p>
+     * 说明：按执行ID和任务ID直接查询，不加载执行的全部历史节点，驳回耗时不随历史增长
+     *
+     * @param executionId
+     * @param revokeTaskId
+     * @return
+     */
+    HistoricActivityInstance getHistoricActivityInstance(String executionId, String revokeTaskId) {
+        String tableName = managementService.getTableName(HistoricActivityInstance.class);
+        List<HistoricActivityInstance> hisList = historyService.createNativeHistoricActivityInstanceQuery()
+                .sql("SELECT * FROM " + tableName + " WHERE EXECUTION_ID_ = #{executionId} AND TASK_ID_ = #{taskId} AND END_TIME_ IS NOT NULL")
+                .parameter("executionId", executionId)
+                .parameter("taskId", revokeTaskId)
+                .listPage(0, 1);
+        if (hisList.isEmpty()) {
             throw new ActivitiException("要指定回滚的taskId=" + revokeTaskId + "节点不存在！");
         }
-        return revokeActInstance;
+        return hisList.get(0);
     }
 }
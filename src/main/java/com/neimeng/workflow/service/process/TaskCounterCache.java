@@ -0,0 +1,238 @@
+package com.neimeng.workflow.service.process;
+
+import com.neimeng.workflow.dao.TaskCounterMapper;
+import com.neimeng.workflow.entity.pojo.TaskCandidate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * 办理人和候选组的待办数量缓存
+ * <p>
+ * 说明：内存中保存每个运行中任务的办理人和候选组，由流程引擎事件在事务提交后增量更新，并定时与数据库对账；
+ * 办理人数量与 taskAssignee(assignee).count() 一致，候选组数量与 taskCandidateGroup(group).count() 一致（只统计还没有办理人的任务）。
+ * 对任务的每次修改都是设置为某个状态，重复执行结果不变，对账期间收到的修改在对账完成后再执行一次，不会丢失。
+ * 只依赖MyBatis，流程引擎的事件监听可以直接注入而不产生循环依赖
+ * <p>
+ * 缓存只接收本节点提交的事件，多节点部署时其它节点办理的任务要等本节点下一次对账才会反映，
+ * 数量最多滞后一个对账间隔（process.task-counter.reconcile-interval-millis）
+ */
+@Slf4j
+@Component
+public class TaskCounterCache {
+
+    @Autowired
+    private TaskCounterMapper taskCounterMapper;
+
+    private Map<String, TaskState> tasks = new HashMap<>();
+
+    private volatile Map<String, Long> assigneeCounts = new ConcurrentHashMap<>();
+
+    private volatile Map<String, Long> groupCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 对账期间收到的修改，不对账时为null
+     */
+    private List<PendingOp> pendingOps;
+
+    private volatile boolean ready;
+
+    /**
+     * 第一次对账完成前数量不可用
+     *
+     * @return
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 办理人的待办数量
+     *
+     * @param assignee
+     * @return
+     */
+    public long getAssigneeCount(String assignee) {
+        return assigneeCounts.getOrDefault(assignee, 0L);
+    }
+
+    /**
+     * 候选组中还没有办理人的任务数量
+     *
+     * @param groupId
+     * @return
+     */
+    public long getGroupCount(String groupId) {
+        return groupCounts.getOrDefault(groupId, 0L);
+    }
+
+    /**
+     * 任务创建，候选组与已经收到的候选组事件合并，不依赖事件的先后顺序
+     *
+     * @param taskId
+     * @param assignee
+     * @param groupIds
+     */
+    public void taskCreated(String taskId, String assignee, Set<String> groupIds) {
+        apply(taskId, old -> {
+            Set<String> allGroupIds = old == null ? new HashSet<>() : new HashSet<>(old.groupIds);
+            allGroupIds.addAll(groupIds);
+            return new TaskState(assignee, allGroupIds);
+        });
+    }
+
+    public void taskAssigned(String taskId, String assignee) {
+        apply(taskId, old -> new TaskState(assignee, old == null ? Collections.emptySet() : old.groupIds));
+    }
+
+    public void candidateGroupAdded(String taskId, String groupId) {
+        apply(taskId, old -> {
+            Set<String> groupIds = old == null ? new HashSet<>() : new HashSet<>(old.groupIds);
+            groupIds.add(groupId);
+            return new TaskState(old == null ? null : old.assignee, groupIds);
+        });
+    }
+
+    public void candidateGroupRemoved(String taskId, String groupId) {
+        apply(taskId, old -> {
+            if (old == null) {
+                return null;
+            }
+            Set<String> groupIds = new HashSet<>(old.groupIds);
+            groupIds.remove(groupId);
+            return new TaskState(old.assignee, groupIds);
+        });
+    }
+
+    public void taskRemoved(String taskId) {
+        apply(taskId, old -> null);
+    }
+
+    /**
+     * 与数据库对账，用数据库中的任务重建缓存
+     */
+    @Scheduled(fixedDelayString = "${process.task-counter.reconcile-interval-millis:300000}")
+    public void reconcile() {
+        synchronized (this) {
+            pendingOps = new ArrayList<>();
+        }
+        Map<String, TaskState> loaded;
+        try {
+            loaded = load();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendingOps = null;
+            }
+            log.warn("reconcile task counters failed", e);
+            return;
+        }
+        synchronized (this) {
+            for (PendingOp pendingOp : pendingOps) {
+                TaskState state = pendingOp.op.apply(loaded.get(pendingOp.taskId));
+                if (state == null) {
+                    loaded.remove(pendingOp.taskId);
+                } else {
+                    loaded.put(pendingOp.taskId, state);
+                }
+            }
+            pendingOps = null;
+            Map<String, Long> newAssigneeCounts = new ConcurrentHashMap<>();
+            Map<String, Long> newGroupCounts = new ConcurrentHashMap<>();
+            for (TaskState state : loaded.values()) {
+                count(state, 1, newAssigneeCounts, newGroupCounts);
+            }
+            if (ready && (!newAssigneeCounts.equals(assigneeCounts) || !newGroupCounts.equals(groupCounts))) {
+                log.info("task counters corrected by reconcile, tasks=[{}]", loaded.size());
+            }
+            tasks = loaded;
+            assigneeCounts = newAssigneeCounts;
+            groupCounts = newGroupCounts;
+            ready = true;
+        }
+    }
+
+    private Map<String, TaskState> load() {
+        Map<String, String> assignees = new HashMap<>();
+        Map<String, Set<String>> groups = new HashMap<>();
+        for (TaskCandidate candidate : taskCounterMapper.selectOpenTaskCandidates()) {
+            assignees.put(candidate.getTaskId(), candidate.getAssignee());
+            Set<String> groupIds = groups.computeIfAbsent(candidate.getTaskId(), k -> new HashSet<>());
+            if (candidate.getGroupId() != null) {
+                groupIds.add(candidate.getGroupId());
+            }
+        }
+        Map<String, TaskState> loaded = new HashMap<>(assignees.size() * 2);
+        assignees.forEach((taskId, assignee) -> loaded.put(taskId, new TaskState(assignee, groups.get(taskId))));
+        return loaded;
+    }
+
+    private synchronized void apply(String taskId, UnaryOperator<TaskState> op) {
+        TaskState old = tasks.get(taskId);
+        TaskState state = op.apply(old);
+        count(old, -1, assigneeCounts, groupCounts);
+        count(state, 1, assigneeCounts, groupCounts);
+        if (state == null) {
+            tasks.remove(taskId);
+        } else {
+            tasks.put(taskId, state);
+        }
+        if (pendingOps != null) {
+            pendingOps.add(new PendingOp(taskId, op));
+        }
+    }
+
+    private static void count(TaskState state, long delta, Map<String, Long> assigneeCounts, Map<String, Long> groupCounts) {
+        if (state == null) {
+            return;
+        }
+        if (state.assignee != null) {
+            add(assigneeCounts, state.assignee, delta);
+        } else {
+            for (String groupId : state.groupIds) {
+                add(groupCounts, groupId, delta);
+            }
+        }
+    }
+
+    private static void add(Map<String, Long> counts, String key, long delta) {
+        counts.compute(key, (k, v) -> {
+            long count = (v == null ? 0 : v) + delta;
+            return count > 0 ? count : null;
+        });
+    }
+
+    private static final class TaskState {
+
+        private final String assignee;
+
+        private final Set<String> groupIds;
+
+        private TaskState(String assignee, Set<String> groupIds) {
+            this.assignee = assignee;
+            this.groupIds = groupIds == null || groupIds.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(groupIds);
+        }
+    }
+
+    private static final class PendingOp {
+
+        private final String taskId;
+
+        private final UnaryOperator<TaskState> op;
+
+        private PendingOp(String taskId, UnaryOperator<TaskState> op) {
+            this.taskId = taskId;
+            this.op = op;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.neimeng.workflow.utils;
+
+import org.activiti.engine.query.NativeQuery;
+
+import java.util.List;
+
+/**
+ * Activiti原生查询工具
+ */
+public final class NativeSqlUtils {
+
+    /**
+     * IN条件每批的参数个数
+     */
+    public static final int IN_BATCH_SIZE = 500;
+
+    private static final String PARAMETER_PREFIX = "p";
+
+    private NativeSqlUtils() {
+    }
+
+    /**
+     * 生成IN条件的占位符，如：(#{p0}, #{p1})
+     *
+     * @param size 参数个数
+     * @return
+     */
+    public static String inClause(int size) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("#{").append(PARAMETER_PREFIX).append(i).append("}");
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * 按顺序设置inClause生成的参数
+     *
+     * @param query
+     * @param values
+     * @return
+     */
+    public static <T extends NativeQuery<T, ?>> T parameters(T query, List<?> values) {
+        for (int i = 0; i < values.size(); i++) {
+            query.parameter(PARAMETER_PREFIX + i, values.get(i));
+        }
+        return query;
+    }
+
+}
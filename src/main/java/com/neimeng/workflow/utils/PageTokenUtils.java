@@ -0,0 +1,98 @@
+package com.neimeng.workflow.utils;
+
+import com.neimeng.workflow.exception.GlobalException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 游标分页标识工具
+ * <p>
+ * 说明：标识由上一页最后一条的排序字段（优先级、创建时间）和id组成，Base64编码后返回给前端，前端不需要解析
+ */
+public final class PageTokenUtils {
+
+    private static final String SEPARATOR = ":";
+
+    private PageTokenUtils() {
+    }
+
+    /**
+     * 生成分页标识
+     *
+     * @param createTime 最后一条的创建时间
+     * @param id         最后一条的id
+     * @return
+     */
+    public static String encode(Date createTime, String id) {
+        return encodeToken(createTime.getTime() + SEPARATOR + id);
+    }
+
+    /**
+     * 生成带优先级的分页标识
+     *
+     * @param priority   最后一条的优先级
+     * @param createTime 最后一条的创建时间
+     * @param id         最后一条的id
+     * @return
+     */
+    public static String encode(int priority, Date createTime, String id) {
+        return encodeToken(priority + SEPARATOR + createTime.getTime() + SEPARATOR + id);
+    }
+
+    /**
+     * 解析分页标识
+     *
+     * @param pageToken
+     * @return
+     */
+    public static PageToken decode(String pageToken) {
+        try {
+            String[] parts = decodeToken(pageToken).split(SEPARATOR, 2);
+            return new PageToken(null, new Date(Long.parseLong(parts[0])), parts[1]);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new GlobalException("无效的分页标识");
+        }
+    }
+
+    /**
+     * 解析带优先级的分页标识
+     *
+     * @param pageToken
+     * @return
+     */
+    public static PageToken decodeWithPriority(String pageToken) {
+        try {
+            String[] parts = decodeToken(pageToken).split(SEPARATOR, 3);
+            return new PageToken(Integer.parseInt(parts[0]), new Date(Long.parseLong(parts[1])), parts[2]);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new GlobalException("无效的分页标识");
+        }
+    }
+
+    private static String encodeToken(String token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeToken(String pageToken) {
+        return new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+    }
+
+    @Getter
+    public static final class PageToken {
+
+        private final Integer priority;
+
+        private final Date createTime;
+
+        private final String id;
+
+        private PageToken(Integer priority, Date createTime, String id) {
+            this.priority = priority;
+            this.createTime = createTime;
+            this.id = id;
+        }
+    }
+}
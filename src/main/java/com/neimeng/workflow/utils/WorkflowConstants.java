@@ -12,6 +12,11 @@ public final class WorkflowConstants {
     public static final String DEFAULT_DS_PROCESS_NAME = "Default Dataset Process";
     public static final String DEFAULT_DS_PROCESS_KEY = "Default_Dataset_Process_Key";
 
+    /**
+     * 默认审批流程的审批人
+     */
+    public static final String DEFAULT_ASSIGNEE = "userA";
+
     /**
      * 审批结果_流程变量名
      */
@@ -28,4 +33,15 @@ public final class WorkflowConstants {
      */
     public static final int PROCESS_PADDING = 5;
 
+    /**
+     * 流程图输出格式
+     */
+    public static final String DIAGRAM_IMAGE_TYPE_PNG = "png";
+    public static final String DIAGRAM_IMAGE_TYPE_SVG = "svg";
+
+    /**
+     * 流程图默认字体
+     */
+    public static final String DIAGRAM_FONT_NAME = "宋体";
+
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+-- 流程实例ID、任务ID与Activiti表的ID_长度一致，索引更小
+
+ALTER TABLE `process_dataset` MODIFY `proc_inst_id` varchar(64) DEFAULT NULL COMMENT '流程实例ID';
+
+ALTER TABLE `process_task` MODIFY `proc_inst_id` varchar(64) DEFAULT NULL COMMENT '流程实例ID';
+
+ALTER TABLE `process_task` MODIFY `task_id` varchar(64) NOT NULL COMMENT 'taskid';
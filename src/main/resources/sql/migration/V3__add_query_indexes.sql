@@ -0,0 +1,14 @@
+-- 按流程实例ID查询数据集，用户任务与数据集关联
+CREATE INDEX `idx_process_dataset_proc_inst` ON `process_dataset` (`proc_inst_id`);
+
+-- 数据集列表按创建时间排序
+CREATE INDEX `idx_process_dataset_create_time` ON `process_dataset` (`create_time`);
+
+-- 按流程实例ID查询审批历史，二级索引包含主键，按id排序不需要额外排序
+CREATE INDEX `idx_process_task_proc_inst` ON `process_task` (`proc_inst_id`);
+
+-- 用户任务按办理人过滤、按创建时间和ID游标分页
+CREATE INDEX `idx_act_ru_task_assignee_time` ON `ACT_RU_TASK` (`ASSIGNEE_`, `CREATE_TIME_`, `ID_`);
+
+-- 驳回时按任务ID查询历史节点
+CREATE INDEX `idx_act_hi_actinst_task` ON `ACT_HI_ACTINST` (`TASK_ID_`);
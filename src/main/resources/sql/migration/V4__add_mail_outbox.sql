@@ -0,0 +1,24 @@
+-- 邮件发件箱：流程中的邮件任务在流程事务中写入，由后台线程发送
+CREATE TABLE IF NOT EXISTS `process_mail_outbox` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `proc_inst_id` varchar(64) DEFAULT NULL COMMENT '流程实例ID',
+  `activity_id` varchar(255) DEFAULT NULL COMMENT '邮件节点ID',
+  `mail_from` varchar(255) DEFAULT NULL COMMENT '发件人，为空时使用默认发件人',
+  `mail_to` varchar(1000) NOT NULL COMMENT '收件人，多个用逗号分隔',
+  `mail_cc` varchar(1000) DEFAULT NULL COMMENT '抄送',
+  `mail_bcc` varchar(1000) DEFAULT NULL COMMENT '密送',
+  `subject` varchar(500) DEFAULT NULL COMMENT '主题',
+  `text_content` text DEFAULT NULL COMMENT '文本内容',
+  `html_content` text DEFAULT NULL COMMENT 'HTML内容',
+  `charset` varchar(32) DEFAULT NULL COMMENT '字符集',
+  `status` int(11) NOT NULL DEFAULT '0' COMMENT '状态：0 待发送,1 已发送,2 发送失败',
+  `attempts` int(11) NOT NULL DEFAULT '0' COMMENT '已尝试次数',
+  `next_attempt_time` datetime NOT NULL COMMENT '下次发送时间，发送中时为租约到期时间',
+  `last_error` varchar(1000) DEFAULT NULL COMMENT '最近一次失败原因',
+  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建日期',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新日期',
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='邮件发件箱';
+
+-- 按状态和下次发送时间查询到期的待发送邮件
+CREATE INDEX `idx_process_mail_outbox_due` ON `process_mail_outbox` (`status`, `next_attempt_time`);
@@ -0,0 +1,5 @@
+-- 申请流程的幂等键：流程进行中时有值，结束或终止后清空，同一数据集可以再次申请
+ALTER TABLE `process_dataset` ADD COLUMN `request_key` varchar(128) DEFAULT NULL COMMENT '幂等键';
+
+-- 客户端重试时不会重复启动流程，MySQL唯一索引允许多个NULL
+CREATE UNIQUE INDEX `uk_process_dataset_request_key` ON `process_dataset` (`request_key`);
@@ -1,3 +1,4 @@
+-- 初始化脚本会删除并重建表；已有数据库的表结构由 sql/migration 下的版本脚本在启动时升级
 
 -- 流程 - 数据集 关联表
 DROP TABLE IF EXISTS `process_dataset`;
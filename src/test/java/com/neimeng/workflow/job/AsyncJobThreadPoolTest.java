@@ -0,0 +1,168 @@
+package com.neimeng.workflow.job;
+
+import com.neimeng.workflow.entity.vo.AsyncJobMetricsVo;
+import com.neimeng.workflow.listener.AsyncJobEventListener;
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.bpmn.model.EndEvent;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.ImplementationType;
+import org.activiti.bpmn.model.Process;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.bpmn.model.ServiceTask;
+import org.activiti.bpmn.model.StartEvent;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.ProcessEngineConfiguration;
+import org.activiti.spring.SpringAsyncExecutor;
+import org.activiti.spring.SpringProcessEngineConfiguration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步作业执行器：大量异步节点作业全部在作业线程池中执行完成，线程池满时作业留在数据库中稍后重新获取，
+ * 不会在启动流程的线程上执行，统计数量与作业数一致
+ * <p>
+ * 使用H2内存数据库启动独立的流程引擎，作业线程池与应用使用相同的配置方式
+ */
+public class AsyncJobThreadPoolTest {
+
+    private static final String PROCESS_KEY = "asyncJobThroughput";
+
+    private static final int INSTANCES = 1000;
+
+    private final JobCounter counter = new JobCounter();
+
+    private AsyncJobThreadPool asyncJobThreadPool;
+
+    private ProcessEngine processEngine;
+
+    @Before
+    public void setUp() {
+        asyncJobThreadPool = new AsyncJobThreadPool(4, 8, 20, 60);
+        AsyncJobEventListener asyncJobEventListener = new AsyncJobEventListener();
+        ReflectionTestUtils.setField(asyncJobEventListener, "asyncJobThreadPool", asyncJobThreadPool);
+
+        SpringAsyncExecutor asyncExecutor = new SpringAsyncExecutor(asyncJobThreadPool.getTaskExecutor(), asyncJobThreadPool);
+        asyncExecutor.setMaxAsyncJobsDuePerAcquisition(50);
+        asyncExecutor.setDefaultAsyncJobAcquireWaitTimeInMillis(50);
+        asyncExecutor.setDefaultTimerJobAcquireWaitTimeInMillis(50);
+
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:async_job;DB_CLOSE_DELAY=-1", "sa", "");
+        SpringProcessEngineConfiguration configuration = new SpringProcessEngineConfiguration();
+        configuration.setDataSource(dataSource);
+        configuration.setTransactionManager(new DataSourceTransactionManager(dataSource));
+        configuration.setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_CREATE_DROP);
+        configuration.setHistory("none");
+        configuration.setAsyncExecutor(asyncExecutor);
+        configuration.setAsyncExecutorActivate(true);
+        configuration.setEventListeners(Collections.singletonList(asyncJobEventListener));
+        Map<Object, Object> beans = new HashMap<>();
+        beans.put("counter", counter);
+        configuration.setBeans(beans);
+        processEngine = configuration.buildProcessEngine();
+
+        processEngine.getRepositoryService().createDeployment()
+                .addBpmnModel(PROCESS_KEY + ".bpmn", buildModel())
+                .deploy();
+    }
+
+    @After
+    public void tearDown() {
+        processEngine.close();
+        asyncJobThreadPool.shutdown();
+    }
+
+    @Test
+    public void throughput() throws InterruptedException {
+        for (int i = 0; i < INSTANCES; i++) {
+            processEngine.getRuntimeService().startProcessInstanceByKey(PROCESS_KEY);
+        }
+        // 吞吐量下限：全部作业在120秒内执行完成
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(120);
+        while (counter.executed.get() < INSTANCES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(INSTANCES, counter.executed.get());
+        Assert.assertEquals(0, counter.outsidePool.get());
+
+        // 作业执行完成事件在作业事务提交前发出，等待最后一批提交
+        while (processEngine.getRuntimeService().createProcessInstanceQuery().count() > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(0, processEngine.getRuntimeService().createProcessInstanceQuery().count());
+        Assert.assertEquals(0, processEngine.getManagementService().createJobQuery().count());
+
+        AsyncJobMetricsVo metrics = asyncJobThreadPool.getMetrics();
+        Assert.assertEquals(INSTANCES, metrics.getExecutedCount());
+        Assert.assertEquals(0, metrics.getFailedCount());
+        Assert.assertEquals(INSTANCES, metrics.getAcquiredCount());
+    }
+
+    /**
+     * start -> 异步服务节点(counter计数) -> end
+     */
+    private static BpmnModel buildModel() {
+        Process process = new Process();
+        process.setId(PROCESS_KEY);
+        process.setExecutable(true);
+
+        StartEvent startEvent = new StartEvent();
+        startEvent.setId("start");
+        ServiceTask serviceTask = new ServiceTask();
+        serviceTask.setId("asyncTask");
+        serviceTask.setName("异步任务");
+        serviceTask.setAsynchronous(true);
+        serviceTask.setImplementationType(ImplementationType.IMPLEMENTATION_TYPE_EXPRESSION);
+        serviceTask.setImplementation("${counter.run()}");
+        EndEvent endEvent = new EndEvent();
+        endEvent.setId("end");
+        addElements(process, startEvent, serviceTask, endEvent,
+                flow("start", "asyncTask"),
+                flow("asyncTask", "end"));
+
+        BpmnModel bpmnModel = new BpmnModel();
+        bpmnModel.addProcess(process);
+        return bpmnModel;
+    }
+
+    /**
+     * 记录执行次数，以及不在作业线程池中执行的次数
+     */
+    public static class JobCounter {
+
+        private final AtomicInteger executed = new AtomicInteger();
+
+        private final AtomicInteger outsidePool = new AtomicInteger();
+
+        public void run() {
+            if (!Thread.currentThread().getName().startsWith("activiti-async-job-")) {
+                outsidePool.incrementAndGet();
+            }
+            executed.incrementAndGet();
+        }
+    }
+
+    private static void addElements(Process process, FlowElement... flowElements) {
+        for (FlowElement flowElement : flowElements) {
+            process.addFlowElement(flowElement);
+        }
+    }
+
+    private static SequenceFlow flow(String sourceRef, String targetRef) {
+        SequenceFlow sequenceFlow = new SequenceFlow(sourceRef, targetRef);
+        sequenceFlow.setId(sourceRef + "_" + targetRef);
+        return sequenceFlow;
+    }
+}
@@ -0,0 +1,90 @@
+package com.neimeng.workflow.mail;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的SMTP服务，收到的邮件放入队列，可以设置为拒收来模拟服务不可用
+ */
+class FakeSmtpServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+
+    private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+    private volatile boolean reject;
+
+    FakeSmtpServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread thread = new Thread(this::acceptLoop, "fake-smtp");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    void setReject(boolean reject) {
+        this.reject = reject;
+    }
+
+    String poll() throws InterruptedException {
+        return messages.poll(100, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                handle(socket);
+            } catch (IOException e) {
+                // 服务关闭或客户端断开
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+        reply(writer, "220 localhost fake smtp");
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String command = line.toUpperCase();
+            if (command.startsWith("MAIL FROM")) {
+                reply(writer, reject ? "451 try again later" : "250 OK");
+            } else if (command.startsWith("DATA")) {
+                reply(writer, "354 end data with <CR><LF>.<CR><LF>");
+                StringBuilder message = new StringBuilder();
+                while ((line = reader.readLine()) != null && !".".equals(line)) {
+                    message.append(line).append('\n');
+                }
+                messages.add(message.toString());
+                reply(writer, "250 OK");
+            } else if (command.startsWith("QUIT")) {
+                reply(writer, "221 bye");
+                return;
+            } else {
+                reply(writer, "250 OK");
+            }
+        }
+    }
+
+    private static void reply(PrintWriter writer, String line) {
+        writer.print(line + "\r\n");
+        writer.flush();
+    }
+}
@@ -0,0 +1,136 @@
+package com.neimeng.workflow.mail;
+
+import com.neimeng.workflow.dao.MailOutboxMapper;
+import com.neimeng.workflow.entity.enums.MailStatusEnum;
+import com.neimeng.workflow.entity.pojo.MailOutbox;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 发件箱发送：发送成功标记已发送，失败按指数退避重试，超过最大次数标记失败，被其它节点领取的邮件跳过
+ * <p>
+ * 通过SMTP发送到进程内的SMTP服务，发件箱表使用Mock
+ */
+public class MailOutboxDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+
+    private static final long MAX_BACKOFF_SECONDS = 100;
+
+    private FakeSmtpServer smtpServer;
+
+    private MailOutboxMapper mailOutboxMapper;
+
+    private MailOutboxDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws IOException {
+        smtpServer = new FakeSmtpServer();
+        mailOutboxMapper = mock(MailOutboxMapper.class);
+        SmtpMailSender mailSender = new SmtpMailSender("localhost", smtpServer.getPort(), false, "", "",
+                "workflow@example.com", 5000);
+        dispatcher = new MailOutboxDispatcher(mailOutboxMapper, mailSender, 50, MAX_ATTEMPTS,
+                INITIAL_BACKOFF_SECONDS, MAX_BACKOFF_SECONDS, 300, 1000);
+        when(mailOutboxMapper.claim(anyLong(), any(), any())).thenReturn(1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        smtpServer.close();
+    }
+
+    @Test
+    public void sendDueMail() throws InterruptedException {
+        MailOutbox mail = mail(0);
+        when(mailOutboxMapper.selectDue(any(), anyInt())).thenReturn(Collections.singletonList(mail));
+
+        Assert.assertEquals(1, dispatcher.drain());
+
+        String message = smtpServer.poll();
+        Assert.assertNotNull(message);
+        Assert.assertTrue(message.contains("Subject: approval"));
+        Assert.assertTrue(message.contains("userA@example.com"));
+        verify(mailOutboxMapper).updateAttempt(eq(1L), eq(MailStatusEnum.SENT.getCode()), any(), isNull());
+    }
+
+    @Test
+    public void retryWithBackoff() throws InterruptedException {
+        smtpServer.setReject(true);
+        when(mailOutboxMapper.selectDue(any(), anyInt())).thenReturn(Collections.singletonList(mail(1)));
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(0, dispatcher.drain());
+
+        ArgumentCaptor<Date> nextAttemptTime = ArgumentCaptor.forClass(Date.class);
+        verify(mailOutboxMapper).updateAttempt(eq(1L), eq(MailStatusEnum.PENDING.getCode()), nextAttemptTime.capture(), anyString());
+        // 第二次失败，等待 30 * 2 秒
+        long delay = nextAttemptTime.getValue().getTime() - start;
+        Assert.assertTrue(delay >= TimeUnit.SECONDS.toMillis(60));
+        Assert.assertTrue(delay < TimeUnit.SECONDS.toMillis(70));
+        Assert.assertNull(smtpServer.poll());
+    }
+
+    @Test
+    public void giveUpAfterMaxAttempts() {
+        smtpServer.setReject(true);
+        when(mailOutboxMapper.selectDue(any(), anyInt())).thenReturn(Collections.singletonList(mail(MAX_ATTEMPTS - 1)));
+
+        Assert.assertEquals(0, dispatcher.drain());
+
+        verify(mailOutboxMapper).updateAttempt(eq(1L), eq(MailStatusEnum.FAILED.getCode()), any(), anyString());
+    }
+
+    @Test
+    public void skipMailClaimedByOtherNode() throws InterruptedException {
+        when(mailOutboxMapper.selectDue(any(), anyInt())).thenReturn(Collections.singletonList(mail(0)));
+        when(mailOutboxMapper.claim(anyLong(), any(), any())).thenReturn(0);
+
+        Assert.assertEquals(0, dispatcher.drain());
+
+        Assert.assertNull(smtpServer.poll());
+        verify(mailOutboxMapper, never()).updateAttempt(anyLong(), anyInt(), any(), any());
+    }
+
+    @Test
+    public void backoff() {
+        Assert.assertEquals(30, dispatcher.getBackoffSeconds(1));
+        Assert.assertEquals(60, dispatcher.getBackoffSeconds(2));
+        Assert.assertEquals(MAX_BACKOFF_SECONDS, dispatcher.getBackoffSeconds(3));
+        Assert.assertEquals(MAX_BACKOFF_SECONDS, dispatcher.getBackoffSeconds(100));
+    }
+
+    private static MailOutbox mail(int attempts) {
+        MailOutbox mail = new MailOutbox();
+        mail.setId(1L);
+        mail.setProcInstId("p1");
+        mail.setActivityId("mailTask");
+        mail.setMailTo("userA@example.com");
+        mail.setSubject("approval");
+        mail.setTextContent("dataset approval finished");
+        mail.setStatus(MailStatusEnum.PENDING.getCode());
+        mail.setAttempts(attempts);
+        mail.setNextAttemptTime(new Date());
+        return mail;
+    }
+}
@@ -0,0 +1,204 @@
+package com.neimeng.workflow.notification;
+
+import com.neimeng.workflow.entity.enums.TaskEventTypeEnum;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务事件推送：按用户和候选组分发，慢连接按任务合并，缓冲区满时改发RESYNC
+ * <p>
+ * 使用进程内的客户端连接，收到的每一批事件放入队列
+ */
+public class TaskNotificationHubTest {
+
+    private static final int BUFFER_SIZE = 3;
+
+    private TaskNotificationHub hub;
+
+    @Before
+    public void setUp() {
+        hub = new TaskNotificationHub(BUFFER_SIZE, 2, 0);
+    }
+
+    @After
+    public void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    public void publishToUserAndGroup() throws InterruptedException {
+        TestClient userA = new TestClient();
+        TestClient groupMember = new TestClient();
+        TestClient other = new TestClient();
+        hub.subscribe("userA", null, userA);
+        hub.subscribe("userB", Collections.singletonList("auditor"), groupMember);
+        hub.subscribe("userC", Collections.singletonList("admin"), other);
+
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t1"), "userA", null);
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t2"), null, Collections.singletonList("auditor"));
+
+        Assert.assertEquals("t1", userA.take().get(0).getTaskId());
+        Assert.assertEquals("t2", groupMember.take().get(0).getTaskId());
+        Assert.assertNull(other.poll());
+        Assert.assertNull(userA.poll());
+    }
+
+    @Test
+    public void coalesceWhileSending() throws InterruptedException {
+        TestClient client = new TestClient();
+        client.block();
+        hub.subscribe("userA", null, client);
+
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t1"), "userA", null);
+        client.awaitSending();
+        // 第一批发送中，t2的三个事件只保留最后一个
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t2"), "userA", null);
+        hub.publish(notification(TaskEventTypeEnum.ASSIGNED, "t2"), "userA", null);
+        hub.publish(notification(TaskEventTypeEnum.COMPLETED, "t2"), "userA", null);
+        client.release();
+
+        Assert.assertEquals("t1", client.take().get(0).getTaskId());
+        List<TaskNotification> batch = client.take();
+        Assert.assertEquals(1, batch.size());
+        Assert.assertEquals("t2", batch.get(0).getTaskId());
+        Assert.assertEquals(TaskEventTypeEnum.COMPLETED, batch.get(0).getType());
+        Assert.assertEquals(2, hub.getMetrics().getCoalescedCount());
+    }
+
+    @Test
+    public void resyncWhenBufferOverflow() throws InterruptedException {
+        TestClient client = new TestClient();
+        client.block();
+        hub.subscribe("userA", null, client);
+
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t0"), "userA", null);
+        client.awaitSending();
+        for (int i = 1; i <= BUFFER_SIZE + 2; i++) {
+            hub.publish(notification(TaskEventTypeEnum.CREATED, "t" + i), "userA", null);
+        }
+        client.release();
+
+        Assert.assertEquals("t0", client.take().get(0).getTaskId());
+        List<TaskNotification> batch = client.take();
+        Assert.assertEquals(1, batch.size());
+        Assert.assertEquals(TaskEventTypeEnum.RESYNC, batch.get(0).getType());
+        Assert.assertNull(client.poll());
+        Assert.assertEquals(1, hub.getMetrics().getOverflowCount());
+
+        // 溢出后新的事件正常推送
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t9"), "userA", null);
+        Assert.assertEquals("t9", client.take().get(0).getTaskId());
+    }
+
+    @Test
+    public void removeBrokenConnection() throws InterruptedException {
+        TestClient client = new TestClient();
+        client.fail();
+        hub.subscribe("userA", null, client);
+        Assert.assertEquals(1, hub.getMetrics().getConnectionCount());
+
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t1"), "userA", null);
+        Assert.assertTrue(client.awaitClosed());
+        Assert.assertEquals(0, hub.getMetrics().getConnectionCount());
+    }
+
+    @Test
+    public void unsubscribe() throws InterruptedException {
+        TestClient client = new TestClient();
+        TaskNotificationHub.Subscription subscription = hub.subscribe("userA", Collections.singletonList("auditor"), client);
+        subscription.unsubscribe();
+        subscription.unsubscribe();
+
+        hub.publish(notification(TaskEventTypeEnum.CREATED, "t1"), "userA", Collections.singletonList("auditor"));
+        Assert.assertTrue(client.awaitClosed());
+        Assert.assertNull(client.poll());
+        Assert.assertEquals(0, hub.getMetrics().getConnectionCount());
+    }
+
+    private static TaskNotification notification(TaskEventTypeEnum type, String taskId) {
+        return new TaskNotification(type, taskId, "task", "p1", null);
+    }
+
+    /**
+     * 进程内客户端，可以阻塞发送来模拟慢连接
+     */
+    private static class TestClient implements NotificationSink {
+
+        private final BlockingQueue<List<TaskNotification>> received = new LinkedBlockingQueue<>();
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private volatile CountDownLatch gate;
+
+        private volatile boolean fail;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void fail() {
+            fail = true;
+        }
+
+        void awaitSending() throws InterruptedException {
+            Assert.assertTrue(sending.await(5, TimeUnit.SECONDS));
+        }
+
+        boolean awaitClosed() throws InterruptedException {
+            return closed.await(5, TimeUnit.SECONDS);
+        }
+
+        List<TaskNotification> take() throws InterruptedException {
+            List<TaskNotification> batch = received.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull("没有收到推送", batch);
+            return batch;
+        }
+
+        List<TaskNotification> poll() throws InterruptedException {
+            return received.poll(200, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void send(List<TaskNotification> notifications) throws IOException {
+            if (fail) {
+                throw new IOException("connection reset");
+            }
+            sending.countDown();
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            received.add(notifications);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.neimeng.workflow.service;
+
+import com.neimeng.workflow.WorkflowApplicationTests;
+import com.neimeng.workflow.entity.params.ApplyDatasetInfo;
+import com.neimeng.workflow.entity.params.BatchApplyDatasetInfo;
+import com.neimeng.workflow.entity.vo.BatchItemVo;
+import com.neimeng.workflow.entity.vo.BatchResultVo;
+import com.neimeng.workflow.entity.vo.TaskVo;
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.bpmn.model.EndEvent;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.Process;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.bpmn.model.StartEvent;
+import org.activiti.bpmn.model.UserTask;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.repository.Deployment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * 批量申请：与逐个调用申请接口的结果一致，重复和流程不存在的申请单独失败，批量申请执行的SQL语句少于逐个申请；
+ * 重试的申请返回原来的任务，不会重复启动流程；流程结束后可以再次申请
+ * <p>
+ * 使用H2内存数据库的MySQL兼容模式，不读写配置的MySQL；SQL语句数只统计测试线程上的执行次数，一次executeBatch算一次。
+ * 幂等键带上每个用例的时间戳，不与其它用例缓存的申请冲突
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:dataset_process;MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+public class DatasetProcessServiceTest extends WorkflowApplicationTests {
+
+    private static final String PROCESS_KEY = "batchApplyBenchmark";
+
+    private static final String DATASET_NAME = "batchApplyBenchmark";
+
+    private static final int COUNT = 100;
+
+    @Autowired
+    private RepositoryService repositoryService;
+
+    @Autowired
+    private DatasetProcessService datasetProcessService;
+
+    @Autowired
+    private RuntimeService runtimeService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    private final String runId = String.valueOf(System.nanoTime());
+
+    private Deployment deployment;
+
+    private String processDefinitionId;
+
+    @Before
+    public void deploy() {
+        deployment = repositoryService.createDeployment()
+                .name(PROCESS_KEY)
+                .addBpmnModel(PROCESS_KEY + ".bpmn", buildModel())
+                .deploy();
+        processDefinitionId = repositoryService.createProcessDefinitionQuery()
+                .deploymentId(deployment.getId()).singleResult().getId();
+    }
+
+    @After
+    public void clean() {
+        repositoryService.deleteDeployment(deployment.getId(), true);
+        jdbcTemplate.update("delete from process_dataset where dataset_name = ?", DATASET_NAME);
+    }
+
+    @Test
+    public void batchApplyUsesFewerStatements() {
+        // 预热，流程定义等缓存加载后再统计
+        datasetProcessService.applyDataSet(application(-1, processDefinitionId), request);
+
+        StatementCounter.start();
+        for (int i = 0; i < COUNT; i++) {
+            TaskVo taskVo = datasetProcessService.applyDataSet(application(i, processDefinitionId), request);
+            Assert.assertEquals("userA", taskVo.getAssignee());
+        }
+        long singleStatements = StatementCounter.stop();
+
+        List<ApplyDatasetInfo> applications = new ArrayList<>(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            applications.add(application(COUNT + i, processDefinitionId));
+        }
+        BatchApplyDatasetInfo batchApply = new BatchApplyDatasetInfo();
+        batchApply.setApplications(applications);
+        StatementCounter.start();
+        BatchResultVo result = datasetProcessService.batchApplyDataSet(batchApply, request);
+        long batchStatements = StatementCounter.stop();
+
+        Assert.assertEquals(COUNT, result.getSuccessCount());
+        Assert.assertEquals(0, result.getFailureCount());
+        for (BatchItemVo item : result.getItems()) {
+            Assert.assertEquals("userA", ((TaskVo) item.getData()).getAssignee());
+        }
+        Assert.assertEquals(Integer.valueOf(2 * COUNT + 1), jdbcTemplate.queryForObject(
+                "select count(*) from process_dataset where dataset_name = ?", Integer.class, DATASET_NAME));
+        // 批量申请一次查询幂等键和流程定义，业务关联信息一条语句批量新增，每个申请至少少一次往返
+        Assert.assertTrue("batch " + batchStatements + ", single " + singleStatements,
+                batchStatements + COUNT <= singleStatements);
+    }
+
+    @Test
+    public void invalidApplicationsFailAlone() {
+        List<ApplyDatasetInfo> applications = new ArrayList<>();
+        applications.add(application(1, processDefinitionId));
+        applications.add(application(1, processDefinitionId));
+        applications.add(application(2, "notExists:1:1"));
+        applications.add(application(3, processDefinitionId));
+        BatchApplyDatasetInfo batchApply = new BatchApplyDatasetInfo();
+        batchApply.setApplications(applications);
+
+        BatchResultVo result = datasetProcessService.batchApplyDataSet(batchApply, request);
+
+        Assert.assertEquals(2, result.getSuccessCount());
+        Assert.assertEquals(2, result.getFailureCount());
+        Assert.assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject(
+                "select count(*) from process_dataset where dataset_name = ?", Integer.class, DATASET_NAME));
+    }
+
+    @Test
+    public void retryReturnsOriginalTask() {
+        TaskVo first = datasetProcessService.applyDataSet(application(1, processDefinitionId), request);
+        TaskVo retried = datasetProcessService.applyDataSet(application(1, processDefinitionId), request);
+        Assert.assertEquals(first.getTaskId(), retried.getTaskId());
+
+        // 批量申请中已经申请过的数据集返回原来的任务
+        List<ApplyDatasetInfo> applications = new ArrayList<>();
+        applications.add(application(1, processDefinitionId));
+        applications.add(application(2, processDefinitionId));
+        BatchApplyDatasetInfo batchApply = new BatchApplyDatasetInfo();
+        batchApply.setApplications(applications);
+        BatchResultVo result = datasetProcessService.batchApplyDataSet(batchApply, request);
+        Assert.assertEquals(2, result.getSuccessCount());
+        Assert.assertEquals(first.getTaskId(), ((TaskVo) result.getItems().get(0).getData()).getTaskId());
+
+        Assert.assertEquals(2, runtimeService.createProcessInstanceQuery().processDefinitionId(processDefinitionId).count());
+        Assert.assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject(
+                "select count(*) from process_dataset where dataset_name = ?", Integer.class, DATASET_NAME));
+    }
+
+    @Test
+    public void endedProcessReleasesRequestKey() {
+        TaskVo first = datasetProcessService.applyDataSet(application(1, processDefinitionId), request);
+        // 不经过审批接口直接删除流程实例
+        runtimeService.deleteProcessInstance(first.getProcInstId(), "test");
+        Assert.assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject(
+                "select count(*) from process_dataset where dataset_name = ? and request_key is not null", Integer.class, DATASET_NAME));
+
+        TaskVo second = datasetProcessService.applyDataSet(application(1, processDefinitionId), request);
+        Assert.assertNotEquals(first.getProcInstId(), second.getProcInstId());
+    }
+
+    private ApplyDatasetInfo application(int dataSetId, String processDefinitionId) {
+        ApplyDatasetInfo application = new ApplyDatasetInfo();
+        application.setDataSetId(dataSetId);
+        application.setRequestKey(runId + "-" + dataSetId);
+        application.setDataSetName(DATASET_NAME);
+        application.setDataSetCreator("userA");
+        application.setProcessDefKey(processDefinitionId);
+        return application;
+    }
+
+    /**
+     * start -> applyTask -> end
+     */
+    private static BpmnModel buildModel() {
+        Process process = new Process();
+        process.setId(PROCESS_KEY);
+        process.setExecutable(true);
+
+        StartEvent startEvent = new StartEvent();
+        startEvent.setId("start");
+        UserTask userTask = new UserTask();
+        userTask.setId("applyTask");
+        userTask.setName("申请审批");
+        EndEvent endEvent = new EndEvent();
+        endEvent.setId("end");
+        addElements(process, startEvent, userTask, endEvent,
+                flow("start", "applyTask"),
+                flow("applyTask", "end"));
+
+        BpmnModel bpmnModel = new BpmnModel();
+        bpmnModel.addProcess(process);
+        return bpmnModel;
+    }
+
+    private static void addElements(Process process, FlowElement... flowElements) {
+        for (FlowElement flowElement : flowElements) {
+            process.addFlowElement(flowElement);
+        }
+    }
+
+    private static SequenceFlow flow(String sourceRef, String targetRef) {
+        SequenceFlow sequenceFlow = new SequenceFlow(sourceRef, targetRef);
+        sequenceFlow.setId(sourceRef + "_" + targetRef);
+        return sequenceFlow;
+    }
+
+    /**
+     * 统计测试线程上执行的SQL语句数，后台线程（异步作业、对账等）的语句不计入
+     */
+    static final class StatementCounter {
+
+        private static final AtomicLong EXECUTIONS = new AtomicLong();
+
+        private static volatile Thread thread;
+
+        static void start() {
+            EXECUTIONS.set(0);
+            thread = Thread.currentThread();
+        }
+
+        static long stop() {
+            thread = null;
+            return EXECUTIONS.get();
+        }
+
+        private static void executed() {
+            if (Thread.currentThread() == thread) {
+                EXECUTIONS.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 把数据源包装为统计执行次数的数据源，流程引擎和MyBatis使用同一个数据源
+     */
+    @TestConfiguration
+    static class StatementCounterConfig {
+
+        @Bean
+        public static BeanPostProcessor statementCountingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)
+                            ? new StatementCountingDataSource((DataSource) bean) : bean;
+                }
+            };
+        }
+    }
+
+    static final class StatementCountingDataSource extends DelegatingDataSource {
+
+        StatementCountingDataSource(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return countingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return countingConnection(super.getConnection(username, password));
+        }
+
+        private static Connection countingConnection(Connection connection) {
+            return proxy(Connection.class, connection, (method, result) -> {
+                if (result instanceof Statement) {
+                    Class<? extends Statement> type = result instanceof CallableStatement ? CallableStatement.class
+                            : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                    return countingStatement(type, (Statement) result);
+                }
+                return result;
+            });
+        }
+
+        private static <T extends Statement> T countingStatement(Class<T> type, Statement statement) {
+            return proxy(type, type.cast(statement), (method, result) -> {
+                if (method.getName().startsWith("execute")) {
+                    StatementCounter.executed();
+                }
+                return result;
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, T target, BiFunction<Method, Object, Object> afterInvoke) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return afterInvoke.apply(method, method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            }));
+        }
+    }
+}
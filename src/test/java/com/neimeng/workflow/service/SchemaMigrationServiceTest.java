@@ -0,0 +1,141 @@
+package com.neimeng.workflow.service;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 业务表结构升级：脚本只执行一次，升级后热点查询的执行计划使用索引
+ * <p>
+ * 使用H2内存数据库的MySQL兼容模式，标识符不区分大小写，Activiti的表由引擎自带的H2建表脚本创建
+ */
+public class SchemaMigrationServiceTest {
+
+    private SimpleDriverDataSource dataSource;
+
+    private SchemaMigrationService schemaMigrationService;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:schema_migration;MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("org/activiti/db/create/activiti.h2.create.engine.sql"));
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("org/activiti/db/create/activiti.h2.create.history.sql"));
+        }
+        schemaMigrationService = new SchemaMigrationService(dataSource);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void migrateOnce() throws SQLException {
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), schemaMigrationService.migrate());
+        Assert.assertEquals(Collections.emptyList(), schemaMigrationService.migrate());
+        Assert.assertEquals(5, queryInt("SELECT COUNT(*) FROM process_schema_version"));
+        Assert.assertEquals(64, queryInt("SELECT CHARACTER_MAXIMUM_LENGTH FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE UPPER(TABLE_NAME) = 'PROCESS_DATASET' AND UPPER(COLUMN_NAME) = 'PROC_INST_ID'"));
+        Assert.assertEquals(64, queryInt("SELECT CHARACTER_MAXIMUM_LENGTH FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE UPPER(TABLE_NAME) = 'PROCESS_TASK' AND UPPER(COLUMN_NAME) = 'TASK_ID'"));
+    }
+
+    @Test
+    public void hotQueriesUseIndexes() throws SQLException {
+        schemaMigrationService.migrate();
+        prepareData();
+
+        // ProcessDatasetMapper.selectByProcessInstanceId
+        assertPlanUses("select id, creator, process_status, dataset_id, proc_inst_id, dataset_name, priority, create_time, update_time "
+                + "from process_dataset where proc_inst_id = 'p10'", "IDX_PROCESS_DATASET_PROC_INST");
+
+        // ProcessTaskMapper.selectByProcessInstanceId
+        assertPlanUses("select id, task_id, task_name, proc_inst_id, approval_user, approval_result, approval_time, create_time, update_time, approval_comment "
+                + "from process_task where proc_inst_id = 'p10' order by id", "IDX_PROCESS_TASK_PROC_INST");
+
+        // ProcessDatasetMapper.getTasksByAssignee
+        assertPlanUses("select t1.ID_ task_id, t1.NAME_ task_name, t2.* from act_ru_task t1 "
+                        + "join process_dataset t2 on t1.PROC_INST_ID_ = t2.proc_inst_id where t1.ASSIGNEE_ = 'user3'",
+                "IDX_ACT_RU_TASK_ASSIGNEE_TIME", "IDX_PROCESS_DATASET_PROC_INST");
+
+        // ProcessDatasetMapper.getTasksByAssigneeAfter
+        assertPlanUses("select t1.ID_ task_id, t1.NAME_ task_name, t1.CREATE_TIME_ task_create_time, t2.* from act_ru_task t1 "
+                        + "join process_dataset t2 on t1.PROC_INST_ID_ = t2.proc_inst_id where t1.ASSIGNEE_ = 'user3' "
+                        + "and (t1.CREATE_TIME_ < '2020-05-15 12:00:00' or (t1.CREATE_TIME_ = '2020-05-15 12:00:00' and t1.ID_ < 't50')) "
+                        + "order by t1.CREATE_TIME_ desc, t1.ID_ desc limit 11",
+                "IDX_ACT_RU_TASK_ASSIGNEE_TIME", "IDX_PROCESS_DATASET_PROC_INST");
+    }
+
+    private void prepareData() throws SQLException {
+        execute("SET REFERENTIAL_INTEGRITY FALSE");
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement dataset = connection.prepareStatement("insert into process_dataset "
+                     + "(creator, process_status, dataset_id, proc_inst_id, dataset_name) values ('userA', 1, ?, ?, 'dataset')");
+             PreparedStatement task = connection.prepareStatement("insert into process_task "
+                     + "(task_id, task_name, proc_inst_id, approval_user, approval_result) values (?, 'task', ?, 'userA', 1)");
+             PreparedStatement ruTask = connection.prepareStatement("insert into ACT_RU_TASK "
+                     + "(ID_, REV_, PROC_INST_ID_, NAME_, ASSIGNEE_, CREATE_TIME_) values (?, 1, ?, 'task', ?, DATEADD('MINUTE', ?, TIMESTAMP '2020-05-15 00:00:00'))")) {
+            for (int i = 0; i < 2000; i++) {
+                String processInstanceId = "p" + i;
+                dataset.setInt(1, i);
+                dataset.setString(2, processInstanceId);
+                dataset.addBatch();
+                task.setString(1, "t" + i);
+                task.setString(2, processInstanceId);
+                task.addBatch();
+                ruTask.setString(1, "t" + i);
+                ruTask.setString(2, processInstanceId);
+                ruTask.setString(3, "user" + i % 50);
+                ruTask.setInt(4, i);
+                ruTask.addBatch();
+            }
+            dataset.executeBatch();
+            task.executeBatch();
+            ruTask.executeBatch();
+        }
+        execute("ANALYZE");
+    }
+
+    private void assertPlanUses(String sql, String... indexNames) throws SQLException {
+        String plan;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            rs.next();
+            plan = rs.getString(1).toUpperCase();
+        }
+        for (String indexName : indexNames) {
+            Assert.assertTrue("执行计划没有使用索引" + indexName + "：" + plan, plan.contains(indexName));
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.neimeng.workflow.service.process;
+
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.bpmn.model.ExclusiveGateway;
+import org.activiti.bpmn.model.FlowNode;
+import org.activiti.bpmn.model.Process;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.bpmn.model.UserTask;
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.impl.persistence.entity.HistoricActivityInstanceEntityImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 高亮连线计算：与原算法结果一致，且每个历史节点只读取一次，计算量随历史节点数线性增长
+ * <p>
+ * 不需要启动Spring容器，流程模型和历史节点都在内存中构造
+ */
+public class ProcessHistoryServiceTest {
+
+    private static final int NODE_COUNT = 6;
+
+    private final ProcessHistoryService processHistoryService = new ProcessHistoryService();
+
+    private final BpmnModel bpmnModel = buildModel();
+
+    private final ProcessDefinitionIndex definitionIndex = new ProcessDefinitionIndex(null, null, bpmnModel);
+
+    @Test
+    public void sameResultAsNestedLoop() {
+        Random random = new Random(20200515L);
+        for (int round = 0; round < 200; round++) {
+            List<HistoricActivityInstance> activities = randomHistory(random, 1 + random.nextInt(120));
+            Assert.assertEquals(nestedLoop(bpmnModel, activities),
+                    processHistoryService.getHighLightedFlows(definitionIndex, activities));
+        }
+    }
+
+    @Test
+    public void linearScaling() {
+        Random random = new Random(1L);
+        for (int size = 2000; size <= 32000; size *= 2) {
+            CountingList activities = new CountingList(sameSecondHistory(random, size));
+            processHistoryService.getHighLightedFlows(definitionIndex, activities);
+            // 每个历史节点只读取一次，与同一秒开始的节点数量无关
+            Assert.assertEquals(size, activities.reads);
+        }
+        // 原算法在同一秒开始的节点很多时，读取次数随节点数平方增长
+        int size = 500;
+        CountingList activities = new CountingList(sameSecondHistory(random, size));
+        nestedLoop(bpmnModel, activities);
+        Assert.assertTrue("原算法读取次数：" + activities.reads, activities.reads > size * size / 2);
+    }
+
+    /**
+     * 节点n0~n5，偶数为userTask，奇数为网关，任意两个节点之间都有连线
+     */
+    private static BpmnModel buildModel() {
+        Process process = new Process();
+        process.setId("highLightTest");
+        FlowNode[] nodes = new FlowNode[NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes[i] = i % 2 == 0 ? new UserTask() : new ExclusiveGateway();
+            nodes[i].setId("n" + i);
+            process.addFlowElement(nodes[i]);
+        }
+        for (FlowNode source : nodes) {
+            for (FlowNode target : nodes) {
+                SequenceFlow sequenceFlow = new SequenceFlow(source.getId(), target.getId());
+                sequenceFlow.setId(source.getId() + "_" + target.getId());
+                source.getOutgoingFlows().add(sequenceFlow);
+                process.addFlowElement(sequenceFlow);
+            }
+        }
+        BpmnModel bpmnModel = new BpmnModel();
+        bpmnModel.addProcess(process);
+        return bpmnModel;
+    }
+
+    /**
+     * 随机历史，开始时间经常落在同一秒
+     */
+    private static List<HistoricActivityInstance> randomHistory(Random random, int size) {
+        List<HistoricActivityInstance> activities = new ArrayList<>(size);
+        long time = 1589500800000L;
+        for (int i = 0; i < size; i++) {
+            int step = random.nextInt(3);
+            time += step == 0 ? 0 : step == 1 ? 300 : 1000;
+            activities.add(activity("n" + random.nextInt(NODE_COUNT), time));
+        }
+        return activities;
+    }
+
+    /**
+     * 原算法的最坏情况：大量userTask在同一秒开始（如多实例会签）
+     */
+    private static List<HistoricActivityInstance> sameSecondHistory(Random random, int size) {
+        List<HistoricActivityInstance> activities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            activities.add(activity("n" + 2 * random.nextInt(NODE_COUNT / 2), 1589500800000L));
+        }
+        return activities;
+    }
+
+    private static HistoricActivityInstance activity(String activityId, long time) {
+        HistoricActivityInstanceEntityImpl activity = new HistoricActivityInstanceEntityImpl();
+        activity.setActivityId(activityId);
+        activity.setActivityType(Integer.parseInt(activityId.substring(1)) % 2 == 0 ? "userTask" : "exclusiveGateway");
+        activity.setStartTime(new Date(time));
+        return activity;
+    }
+
+    /**
+     * 原先的实现，作为结果比对的基准
+     */
+    private static List<String> nestedLoop(BpmnModel bpmnModel, List<HistoricActivityInstance> historicActivityInstances) {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        List<String> highFlows = new ArrayList<>();
+        for (int i = 0; i < historicActivityInstances.size() - 1; i++) {
+            FlowNode activityImpl = (FlowNode) bpmnModel.getMainProcess().getFlowElement(historicActivityInstances.get(i).getActivityId());
+            List<FlowNode> sameStartTimeNodes = new ArrayList<>();
+            FlowNode sameActivityImpl1 = null;
+            HistoricActivityInstance activityImpl_ = historicActivityInstances.get(i);
+            for (int k = i + 1; k <= historicActivityInstances.size() - 1; k++) {
+                HistoricActivityInstance activityImp2_ = historicActivityInstances.get(k);
+                if (!(activityImpl_.getActivityType().equals("userTask") && activityImp2_.getActivityType().equals("userTask") &&
+                        df.format(activityImpl_.getStartTime()).equals(df.format(activityImp2_.getStartTime())))) {
+                    sameActivityImpl1 = (FlowNode) bpmnModel.getMainProcess().getFlowElement(activityImp2_.getActivityId());
+                    break;
+                }
+            }
+            sameStartTimeNodes.add(sameActivityImpl1);
+            for (int j = i + 1; j < historicActivityInstances.size() - 1; j++) {
+                HistoricActivityInstance activityImpl1 = historicActivityInstances.get(j);
+                HistoricActivityInstance activityImpl2 = historicActivityInstances.get(j + 1);
+                if (df.format(activityImpl1.getStartTime()).equals(df.format(activityImpl2.getStartTime()))) {
+                    sameStartTimeNodes.add((FlowNode) bpmnModel.getMainProcess().getFlowElement(activityImpl2.getActivityId()));
+                } else {
+                    break;
+                }
+            }
+            for (SequenceFlow pvmTransition : activityImpl.getOutgoingFlows()) {
+                FlowNode pvmActivityImpl = (FlowNode) bpmnModel.getMainProcess().getFlowElement(pvmTransition.getTargetRef());
+                if (sameStartTimeNodes.contains(pvmActivityImpl)) {
+                    highFlows.add(pvmTransition.getId());
+                }
+            }
+        }
+        return highFlows;
+    }
+
+    /**
+     * 记录历史节点的读取次数
+     */
+    private static class CountingList extends AbstractList<HistoricActivityInstance> {
+
+        private final List<HistoricActivityInstance> activities;
+
+        private int reads;
+
+        private CountingList(List<HistoricActivityInstance> activities) {
+            this.activities = activities;
+        }
+
+        @Override
+        public HistoricActivityInstance get(int index) {
+            reads++;
+            return activities.get(index);
+        }
+
+        @Override
+        public int size() {
+            return activities.size();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.neimeng.workflow.service.process;
+
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.bpmn.model.EndEvent;
+import org.activiti.bpmn.model.ExclusiveGateway;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.Process;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.bpmn.model.StartEvent;
+import org.activiti.bpmn.model.UserTask;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.ManagementService;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.ProcessEngineConfiguration;
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.history.NativeHistoricActivityInstanceQuery;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 驳回目标历史节点查询：按执行ID和任务ID（TASK_ID_有索引）只查询一条，与原先加载全部历史后遍历的结果一致
+ * <p>
+ * 使用H2内存数据库启动独立的流程引擎，测试流程：userTask完成后经网关回到自身，每循环一次产生两条历史节点；
+ * 查询方式通过Mock的HistoryService校验
+ */
+public class ProcessTaskServiceTest {
+
+    private static final String PROCESS_KEY = "historyLookup";
+
+    private ProcessEngine processEngine;
+
+    private ProcessTaskService processTaskService;
+
+    @Before
+    public void setUp() {
+        processEngine = ProcessEngineConfiguration.createStandaloneInMemProcessEngineConfiguration()
+                .setJdbcUrl("jdbc:h2:mem:history_lookup;DB_CLOSE_DELAY=-1")
+                .setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_CREATE_DROP)
+                .buildProcessEngine();
+        processEngine.getRepositoryService().createDeployment()
+                .addBpmnModel(PROCESS_KEY + ".bpmn", buildModel())
+                .deploy();
+        processTaskService = new ProcessTaskService();
+        ReflectionTestUtils.setField(processTaskService, "historyService", processEngine.getHistoryService());
+        ReflectionTestUtils.setField(processTaskService, "managementService", processEngine.getManagementService());
+    }
+
+    @After
+    public void tearDown() {
+        processEngine.close();
+    }
+
+    @Test
+    public void sameResultAsScan() {
+        for (int loops : new int[]{1, 10, 200}) {
+            ProcessInstance processInstance = processEngine.getRuntimeService().startProcessInstanceByKey(PROCESS_KEY,
+                    Collections.singletonMap("loop", true));
+            for (int i = 0; i < loops; i++) {
+                Task task = processEngine.getTaskService().createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+                processEngine.getTaskService().complete(task.getId());
+            }
+            Task current = processEngine.getTaskService().createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+            List<HistoricTaskInstance> finishedTasks = processEngine.getHistoryService().createHistoricTaskInstanceQuery()
+                    .processInstanceId(processInstance.getId()).finished().list();
+            Assert.assertEquals(loops, finishedTasks.size());
+            for (HistoricTaskInstance finishedTask : finishedTasks) {
+                HistoricActivityInstance expected = scan(current.getExecutionId(), finishedTask.getId());
+                HistoricActivityInstance actual = processTaskService.getHistoricActivityInstance(current.getExecutionId(), finishedTask.getId());
+                Assert.assertEquals(expected.getId(), actual.getId());
+                Assert.assertEquals(expected.getActivityId(), actual.getActivityId());
+            }
+        }
+    }
+
+    @Test(expected = ActivitiException.class)
+    public void missingTaskFails() {
+        ProcessInstance processInstance = processEngine.getRuntimeService().startProcessInstanceByKey(PROCESS_KEY,
+                Collections.singletonMap("loop", true));
+        Task current = processEngine.getTaskService().createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+        // 还没完成的任务没有已完成的历史节点
+        processTaskService.getHistoricActivityInstance(current.getExecutionId(), current.getId());
+    }
+
+    @Test
+    public void singleIndexedLookup() {
+        HistoryService historyService = mock(HistoryService.class);
+        ManagementService managementService = mock(ManagementService.class);
+        NativeHistoricActivityInstanceQuery query = mock(NativeHistoricActivityInstanceQuery.class, RETURNS_SELF);
+        HistoricActivityInstance activity = mock(HistoricActivityInstance.class);
+        when(managementService.getTableName(HistoricActivityInstance.class)).thenReturn("ACT_HI_ACTINST");
+        when(historyService.createNativeHistoricActivityInstanceQuery()).thenReturn(query);
+        when(query.listPage(anyInt(), anyInt())).thenReturn(Collections.singletonList(activity));
+        ProcessTaskService service = new ProcessTaskService();
+        ReflectionTestUtils.setField(service, "historyService", historyService);
+        ReflectionTestUtils.setField(service, "managementService", managementService);
+
+        Assert.assertSame(activity, service.getHistoricActivityInstance("e1", "t1"));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(query).sql(sql.capture());
+        Assert.assertTrue(sql.getValue(), sql.getValue().contains("EXECUTION_ID_ = #{executionId}"));
+        Assert.assertTrue(sql.getValue(), sql.getValue().contains("TASK_ID_ = #{taskId}"));
+        verify(query).parameter("executionId", "e1");
+        verify(query).parameter("taskId", "t1");
+        // 只取一条，不加载执行的全部历史节点
+        verify(query).listPage(0, 1);
+        verify(query, never()).list();
+        verify(historyService, never()).createHistoricActivityInstanceQuery();
+    }
+
+    /**
+     * 原先的实现，作为结果比对的基准
+     */
+    private HistoricActivityInstance scan(String executionId, String revokeTaskId) {
+        List<HistoricActivityInstance> hisList = processEngine.getHistoryService().createHistoricActivityInstanceQuery()
+                .executionId(executionId).finished().list();
+        for (HistoricActivityInstance historicActivityInstance : hisList) {
+            if (revokeTaskId.equals(historicActivityInstance.getTaskId())) {
+                return historicActivityInstance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * start -> loopTask -> gateway，loop为true时回到loopTask，否则结束
+     */
+    private static BpmnModel buildModel() {
+        Process process = new Process();
+        process.setId(PROCESS_KEY);
+        process.setExecutable(true);
+
+        StartEvent startEvent = new StartEvent();
+        startEvent.setId("start");
+        UserTask userTask = new UserTask();
+        userTask.setId("loopTask");
+        userTask.setName("循环任务");
+        ExclusiveGateway gateway = new ExclusiveGateway();
+        gateway.setId("gateway");
+        EndEvent endEvent = new EndEvent();
+        endEvent.setId("end");
+        addElements(process, startEvent, userTask, gateway, endEvent,
+                flow("start", "loopTask", null),
+                flow("loopTask", "gateway", null),
+                flow("gateway", "loopTask", "${loop}"),
+                flow("gateway", "end", "${!loop}"));
+
+        BpmnModel bpmnModel = new BpmnModel();
+        bpmnModel.addProcess(process);
+        return bpmnModel;
+    }
+
+    private static void addElements(Process process, FlowElement... flowElements) {
+        for (FlowElement flowElement : flowElements) {
+            process.addFlowElement(flowElement);
+        }
+    }
+
+    private static SequenceFlow flow(String sourceRef, String targetRef, String condition) {
+        SequenceFlow sequenceFlow = new SequenceFlow(sourceRef, targetRef);
+        sequenceFlow.setId(sourceRef + "_" + targetRef);
+        sequenceFlow.setConditionExpression(condition);
+        return sequenceFlow;
+    }
+}
@@ -0,0 +1,113 @@
+package com.neimeng.workflow.service.process;
+
+import com.neimeng.workflow.dao.TaskCounterMapper;
+import com.neimeng.workflow.entity.pojo.TaskCandidate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 待办数量缓存：事件增量更新、认领后从候选组转到办理人、对账期间收到的事件在对账后重放
+ * <p>
+ * 任务表查询使用Mock
+ */
+public class TaskCounterCacheTest {
+
+    private TaskCounterMapper taskCounterMapper;
+
+    private TaskCounterCache cache;
+
+    @Before
+    public void setUp() {
+        taskCounterMapper = mock(TaskCounterMapper.class);
+        cache = new TaskCounterCache();
+        ReflectionTestUtils.setField(cache, "taskCounterMapper", taskCounterMapper);
+        when(taskCounterMapper.selectOpenTaskCandidates()).thenReturn(Collections.emptyList());
+        cache.reconcile();
+    }
+
+    @Test
+    public void claimMovesTaskFromGroupToAssignee() {
+        cache.taskCreated("t1", null, new HashSet<>(Arrays.asList("auditor", "admin")));
+        cache.taskCreated("t2", null, Collections.singleton("auditor"));
+        Assert.assertEquals(2, cache.getGroupCount("auditor"));
+        Assert.assertEquals(1, cache.getGroupCount("admin"));
+
+        cache.taskAssigned("t1", "userA");
+        Assert.assertEquals(1, cache.getAssigneeCount("userA"));
+        Assert.assertEquals(1, cache.getGroupCount("auditor"));
+        Assert.assertEquals(0, cache.getGroupCount("admin"));
+
+        cache.taskRemoved("t1");
+        Assert.assertEquals(0, cache.getAssigneeCount("userA"));
+        Assert.assertEquals(1, cache.getGroupCount("auditor"));
+    }
+
+    @Test
+    public void taskCreatedAfterIdentityLinkEvents() {
+        cache.candidateGroupAdded("t1", "auditor");
+        cache.candidateGroupAdded("t1", "admin");
+        cache.taskCreated("t1", null, Collections.emptySet());
+        Assert.assertEquals(1, cache.getGroupCount("auditor"));
+        Assert.assertEquals(1, cache.getGroupCount("admin"));
+
+        cache.candidateGroupRemoved("t1", "admin");
+        Assert.assertEquals(0, cache.getGroupCount("admin"));
+        Assert.assertEquals(1, cache.getGroupCount("auditor"));
+    }
+
+    @Test
+    public void pendingOpsReplayedAfterReconcile() {
+        cache.taskCreated("t1", "userA", Collections.emptySet());
+        // 数据库快照中有t1和t2，查询期间t1被完成、t2被认领、t3被创建，快照中看不到这些修改
+        when(taskCounterMapper.selectOpenTaskCandidates()).thenAnswer(invocation -> {
+            cache.taskRemoved("t1");
+            cache.taskAssigned("t2", "userB");
+            cache.taskCreated("t3", null, Collections.singleton("auditor"));
+            return Arrays.asList(candidate("t1", "userA", null), candidate("t2", null, "auditor"));
+        });
+        cache.reconcile();
+
+        Assert.assertTrue(cache.isReady());
+        Assert.assertEquals(0, cache.getAssigneeCount("userA"));
+        Assert.assertEquals(1, cache.getAssigneeCount("userB"));
+        Assert.assertEquals(1, cache.getGroupCount("auditor"));
+    }
+
+    @Test
+    public void reconcileCorrectsMissedEvents() {
+        cache.taskCreated("t1", "userA", Collections.emptySet());
+        // t1已在其它节点完成，t2由其它节点创建，本节点都没有收到事件
+        when(taskCounterMapper.selectOpenTaskCandidates()).thenReturn(Collections.singletonList(candidate("t2", null, "auditor")));
+        cache.reconcile();
+
+        Assert.assertEquals(0, cache.getAssigneeCount("userA"));
+        Assert.assertEquals(1, cache.getGroupCount("auditor"));
+    }
+
+    @Test
+    public void failedReconcileKeepsCounts() {
+        cache.taskCreated("t1", "userA", Collections.emptySet());
+        when(taskCounterMapper.selectOpenTaskCandidates()).thenThrow(new IllegalStateException("db down"));
+        cache.reconcile();
+
+        cache.taskCreated("t2", "userA", Collections.emptySet());
+        Assert.assertEquals(2, cache.getAssigneeCount("userA"));
+    }
+
+    private static TaskCandidate candidate(String taskId, String assignee, String groupId) {
+        TaskCandidate candidate = new TaskCandidate();
+        candidate.setTaskId(taskId);
+        candidate.setAssignee(assignee);
+        candidate.setGroupId(groupId);
+        return candidate;
+    }
+}